@@ -0,0 +1,74 @@
+package ch.epfl.gameboj.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import ch.epfl.gameboj.component.cpu.Alu;
+import ch.epfl.gameboj.component.cpu.Alu.RotDir;
+
+/**
+ * Mesure le débit des opérations de l'ALU, opérandes et fanions compris.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AluBenchmark {
+
+    private int l, r;
+
+    private void nextOperands() {
+        l = (l + 0x35) & 0xFF;
+        r = (r + 0x4B) & 0xFF;
+    }
+
+    @Benchmark
+    public int add() {
+        nextOperands();
+        return Alu.add(l, r, (l & 1) != 0);
+    }
+
+    @Benchmark
+    public int sub() {
+        nextOperands();
+        return Alu.sub(l, r, (r & 1) != 0);
+    }
+
+    @Benchmark
+    public int add16H() {
+        nextOperands();
+        return Alu.add16H(l << 8 | r, r << 8 | l);
+    }
+
+    @Benchmark
+    public int and() {
+        nextOperands();
+        return Alu.and(l, r);
+    }
+
+    @Benchmark
+    public int rotate() {
+        nextOperands();
+        return Alu.rotate(RotDir.LEFT, l, (r & 1) != 0);
+    }
+
+    @Benchmark
+    public int bcdAdjust() {
+        nextOperands();
+        return Alu.bcdAdjust(l, (r & 1) != 0, (r & 2) != 0, (r & 4) != 0);
+    }
+
+    @Benchmark
+    public int testBit() {
+        nextOperands();
+        return Alu.testBit(l, r & 7);
+    }
+}
@@ -0,0 +1,55 @@
+package ch.epfl.gameboj.bench;
+
+import java.io.File;
+import java.io.IOException;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * Cette classe utilitaire charge les ROMs utilisées par les benchmarks, depuis
+ * le dossier donné par la propriété système gameboj.romDirectory ("ROM files"
+ * par défaut, relatif au dossier du projet).
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ */
+final class BenchRoms {
+
+    private static final String ROM_DIRECTORY = System.getProperty("gameboj.romDirectory", "ROM files");
+
+    private BenchRoms() {
+    }
+
+    /**
+     * Construit une Gameboy exécutant la ROM donnée.
+     *
+     * @param romName
+     *            le nom du fichier de la ROM
+     * @return la Gameboy
+     * @throws IOException
+     *             en cas d'erreur de lecture du fichier
+     */
+    static GameBoy gameBoy(String romName) throws IOException {
+        return new GameBoy(Cartridge.ofFile(new File(ROM_DIRECTORY, romName)));
+    }
+
+    /**
+     * Construit une Gameboy exécutant la ROM donnée, après lui avoir fait
+     * émuler le nombre d'images donné (pour dépasser l'écran de démarrage).
+     *
+     * @param romName
+     *            le nom du fichier de la ROM
+     * @param frames
+     *            le nombre d'images à émuler
+     * @return la Gameboy
+     * @throws IOException
+     *             en cas d'erreur de lecture du fichier
+     */
+    static GameBoy warmedUpGameBoy(String romName, int frames) throws IOException {
+        GameBoy gameBoy = gameBoy(romName);
+        gameBoy.runUntil((long) frames * LcdController.IMAGE_CYCLE_DURATION);
+        return gameBoy;
+    }
+}
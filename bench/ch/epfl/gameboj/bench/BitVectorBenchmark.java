@@ -0,0 +1,68 @@
+package ch.epfl.gameboj.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ch.epfl.gameboj.bits.BitVector;
+
+/**
+ * Mesure le coût des opérations de BitVector sur des vecteurs de la taille de
+ * l'image de fond (256 bits), telles qu'utilisées par le moteur IMAGE_LINES.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BitVectorBenchmark {
+
+    private static final int SIZE = 256;
+
+    private BitVector v1, v2;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(2018);
+        BitVector.Builder b1 = new BitVector.Builder(SIZE), b2 = new BitVector.Builder(SIZE);
+        for (int i = 0; i < SIZE; i += Byte.SIZE) {
+            b1.setByte(i, random.nextInt(256));
+            b2.setByte(i, random.nextInt(256));
+        }
+        v1 = b1.build();
+        v2 = b2.build();
+    }
+
+    @Benchmark
+    public BitVector and() {
+        return v1.and(v2);
+    }
+
+    @Benchmark
+    public BitVector or() {
+        return v1.or(v2);
+    }
+
+    @Benchmark
+    public BitVector not() {
+        return v1.not();
+    }
+
+    @Benchmark
+    public BitVector extractWrapped() {
+        return v1.extractWrapped(83, 160);
+    }
+
+    @Benchmark
+    public BitVector shift() {
+        return v1.shift(-13);
+    }
+}
@@ -0,0 +1,48 @@
+package ch.epfl.gameboj.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ch.epfl.gameboj.Bus;
+
+/**
+ * Mesure le débit des lectures et écritures sur le bus, réparties sur toutes
+ * les régions de l'espace d'adressage (ROM, VRAM, RAM, registres, ...).
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BusBenchmark {
+
+    private Bus bus;
+    private int address;
+
+    @Setup
+    public void setUp() throws IOException {
+        bus = BenchRoms.warmedUpGameBoy("tetris.gb", 60).getBus();
+    }
+
+    @Benchmark
+    public int read() {
+        // Un pas premier fait visiter toutes les pages du bus
+        address = (address + 0x0101) & 0xFFFF;
+        return bus.read(address);
+    }
+
+    @Benchmark
+    public void writeWorkRam() {
+        address = (address + 1) & 0x1FFF;
+        bus.write(0xC000 + address, address & 0xFF);
+    }
+}
@@ -0,0 +1,61 @@
+package ch.epfl.gameboj.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cpu.Cpu;
+
+/**
+ * Mesure le débit d'instructions du processeur seul: Cpu.cycle est appelé à
+ * chaque cycle où le processeur travaille, sans faire avancer les autres
+ * composants.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CpuBenchmark {
+
+    private static final int INSTRUCTIONS = 1000;
+
+    @Param({ "tetris.gb", "sml.gb", "bomberman.gb" })
+    public String rom;
+
+    private Cpu cpu;
+    private long cycle;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        GameBoy gameBoy = BenchRoms.warmedUpGameBoy(rom, 60);
+        cpu = gameBoy.getCpu();
+        cycle = gameBoy.getCycles();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public long cycle() {
+        for (int i = 0; i < INSTRUCTIONS; ++i) {
+            long next = cpu.nextEventCycle(cycle);
+            if (next == Long.MAX_VALUE) {
+                throw new IllegalStateException("The CPU halted without any component left to wake it up");
+            }
+            cpu.cycle(next);
+            cycle = next + 1;
+        }
+        return cycle;
+    }
+}
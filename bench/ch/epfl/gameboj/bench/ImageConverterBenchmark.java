@@ -0,0 +1,60 @@
+package ch.epfl.gameboj.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+import ch.epfl.gameboj.gui.ImageConverter;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+
+/**
+ * Mesure le coût de la conversion d'une image de l'écran en image JavaFX, à
+ * partir d'une LcdImage ou des index de couleur du tampon d'image. Le toolkit
+ * JavaFX est démarré pour que les images puissent être créées.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImageConverterBenchmark {
+
+    private final ImageConverter imageConverter = new ImageConverter();
+    private LcdImage lcdImage;
+    private final byte[] frame = new byte[LcdController.LCD_WIDTH * LcdController.LCD_HEIGHT];
+
+    @Setup
+    public void setUp() throws IOException {
+        try {
+            Platform.startup(() -> {
+            });
+        } catch (IllegalStateException e) {
+            // Le toolkit a déjà été démarré par une itération précédente
+        }
+
+        LcdController lcdController = BenchRoms.warmedUpGameBoy("sml.gb", 300).getLcdController();
+        lcdImage = lcdController.currentImage();
+        lcdController.copyCurrentFrame(frame);
+    }
+
+    @Benchmark
+    public Image convertLcdImage() {
+        return imageConverter.convert(lcdImage);
+    }
+
+    @Benchmark
+    public Image convertFrame() {
+        return imageConverter.convert(frame);
+    }
+}
@@ -0,0 +1,81 @@
+package ch.epfl.gameboj.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.cpu.Cpu;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * Mesure le coût du dessin d'une ligne par chacun des deux moteurs de rendu du
+ * contrôleur LCD, sur l'état d'une ROM en cours de jeu.
+ *
+ * Le contrôleur mesuré est indépendant de la Gameboy: il reçoit une copie de sa
+ * VRAM, de son OAM et de ses registres, puis dessine des images complètes au
+ * moyen de cycle, comme dans la Gameboy, sans que le processeur ne les modifie.
+ * Le score est donné par ligne.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LcdBenchmark {
+
+    @Param({ "tetris.gb", "sml.gb", "bomberman.gb" })
+    public String rom;
+
+    @Param({ "IMAGE_LINES", "FRAME_BUFFER" })
+    public LcdController.Renderer renderer;
+
+    private LcdController lcdController;
+    private long cycle;
+
+    @Setup
+    public void setUp() throws IOException {
+        LcdController source = BenchRoms.warmedUpGameBoy(rom, 300).getLcdController();
+
+        lcdController = new LcdController(new Cpu(), renderer);
+        lcdController.attachTo(new Bus());
+        copy(source, AddressMap.VRAM_START, AddressMap.VRAM_END);
+        copy(source, AddressMap.OAM_START, AddressMap.OAM_END);
+        // LY et DMA ne sont pas copiés, car les écrire remet LY à 0 et démarre
+        // une copie DMA; LCDC est écrit en dernier, ce qui allume l'écran
+        for (int address = AddressMap.REGS_LCD_START + 1; address < AddressMap.REGS_LCD_END; ++address) {
+            if (address != AddressMap.REG_LY && address != AddressMap.REG_DMA) {
+                lcdController.write(address, source.read(address));
+            }
+        }
+        lcdController.write(AddressMap.REG_LCDC, source.read(AddressMap.REG_LCDC));
+    }
+
+    private void copy(LcdController source, int start, int end) {
+        for (int address = start; address < end; ++address) {
+            lcdController.write(address, source.read(address));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LcdController.LCD_HEIGHT)
+    public LcdController drawImage() {
+        long end = cycle + LcdController.IMAGE_CYCLE_DURATION;
+        for (long next = lcdController.nextEventCycle(cycle); next < end; next = lcdController.nextEventCycle(next + 1)) {
+            lcdController.cycle(next);
+        }
+        cycle = end;
+        return lcdController;
+    }
+}
@@ -0,0 +1,60 @@
+package ch.epfl.gameboj.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * Macro-benchmark: émule un nombre fixe d'images d'une ROM, sans interface
+ * graphique, depuis l'allumage de la Gameboy. Le score est en images émulées
+ * par seconde; lancé avec "-prof gc", gc.alloc.rate.norm donne le nombre
+ * d'octets alloués par image.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RomBenchmark {
+
+    private static final int FRAMES = 600;
+
+    @Param({ "tetris.gb", "sml.gb", "bomberman.gb" })
+    public String rom;
+
+    private GameBoy gameBoy;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException {
+        gameBoy = BenchRoms.gameBoy(rom);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public GameBoy frames() {
+        for (int frame = 1; frame <= FRAMES; ++frame) {
+            gameBoy.runUntil((long) frame * LcdController.IMAGE_CYCLE_DURATION);
+        }
+        return gameBoy;
+    }
+}
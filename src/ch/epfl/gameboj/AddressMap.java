@@ -93,7 +93,7 @@ public interface AddressMap {
     int REG_NR52 = 0xFF26;
     int REGS_NR_END = 0xFF27;
     int WAVE_RAM_START = 0xFF30;
-    int WAVE_RAM_END = 0xFF3F, WAVE_RAM_SIZE = WAVE_RAM_END - WAVE_RAM_START;
+    int WAVE_RAM_END = 0xFF40, WAVE_RAM_SIZE = WAVE_RAM_END - WAVE_RAM_START;
 
     int REGS_LCD_START = 0xFF40;
     int REG_LCDC = 0xFF40;
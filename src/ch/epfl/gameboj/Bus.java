@@ -1,6 +1,7 @@
 package ch.epfl.gameboj;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Objects;
 
 import ch.epfl.gameboj.component.Component;
@@ -14,10 +15,27 @@ import ch.epfl.gameboj.component.Component;
  */
 
 public final class Bus {
+    // L'espace d'adressage est découpé en 256 pages de 256 octets, indexées par
+    // l'octet de poids fort de l'adresse
+    private static final int PAGE_COUNT = 256;
+
+    private static final Component[] NO_COMPONENTS = new Component[0];
+
     private final ArrayList<Component> attachedComponents = new ArrayList<Component>();
-       
+    // Pour chaque page, les composants qui y sont attachés, dans l'ordre d'attachement
+    private final Component[][] pageTable = new Component[PAGE_COUNT][];
+
+    /**
+     * Construit un bus auquel aucun composant n'est attaché.
+     */
+    public Bus() {
+        Arrays.fill(pageTable, NO_COMPONENTS);
+    }
+
     /**
-     * Attache un composant au bus (en le rajoutant au tableau des composants).
+     * Attache un composant au bus (en le rajoutant au tableau des composants), et
+     * l'ajoute à la fin de la liste des composants de chacune des pages
+     * auxquelles il est attaché.
      * 
      * @param component
      *            le composant
@@ -26,8 +44,15 @@ public final class Bus {
      */
     public void attach(Component component) {
         attachedComponents.add(Objects.requireNonNull(component, "The component to be attached cannot be null."));
+        for (int page = 0; page < PAGE_COUNT; ++page) {
+            if (component.isMappedToPage(page)) {
+                Component[] pageComponents = Arrays.copyOf(pageTable[page], pageTable[page].length + 1);
+                pageComponents[pageComponents.length - 1] = component;
+                pageTable[page] = pageComponents;
+            }
+        }
     }
-    
+
     /**
      * Retourne la valeur stockée à l'adresse donnée si au moins un des
      * composants attaché au bus possède une valeur à cette adresse ou 0xFF
@@ -39,21 +64,20 @@ public final class Bus {
      * @throws IllegalArgumentException
      *             si l'adresse n'est pas une valeur 16 bits
      */
-    public int read(int address) {   
-        Preconditions.checkBits16(address);
-        for (Component c : attachedComponents) {
-            if (c.read(address) != Component.NO_DATA) {
-                return c.read(address);
+    public int read(int address) {
+        for (Component c : pageTable[Preconditions.checkBits16(address) >>> Byte.SIZE]) {
+            int data = c.read(address);
+            if (data != Component.NO_DATA) {
+                return data;
             }
         }
-        
+
         return 255;
     }
-    
-    
+
     /**
      * Ecrit la valeur à l'adresse donnée dans tous les composants connectés au
-     * bus.
+     * bus qui sont attachés à la page de l'adresse.
      * 
      * @param address
      *            l'adresse
@@ -64,9 +88,8 @@ public final class Bus {
      *             n'est pas une valeur 8 bits
      */
     public void write(int address, int data) {
-        Preconditions.checkBits16(address);
         Preconditions.checkBits8(data);
-        for (Component c : attachedComponents) {
+        for (Component c : pageTable[Preconditions.checkBits16(address) >>> Byte.SIZE]) {
             c.write(address, data);
         }
     }
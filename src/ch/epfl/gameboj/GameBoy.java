@@ -1,14 +1,21 @@
 package ch.epfl.gameboj;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.Objects;
 
+import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.Snapshottable;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.lcd.LcdController;
 import ch.epfl.gameboj.component.memory.BootRomController;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.RamController;
+import ch.epfl.gameboj.component.serial.SerialPort;
+import ch.epfl.gameboj.component.sound.Apu;
 import ch.epfl.gameboj.component.time.Timer;
 
 /**
@@ -19,9 +26,10 @@ import ch.epfl.gameboj.component.time.Timer;
  * @author David Cian (287967)
  *
  */
-public final class GameBoy {
+public final class GameBoy implements Snapshottable {
 
     private final Bus bus = new Bus();
+    private final Cartridge cartridge;
     private final Ram workRam = new Ram(AddressMap.WRAM_BANK_0_SIZE + AddressMap.WRAM_BANK_1_SIZE);
     private final RamController workRamController = new RamController(workRam, AddressMap.WRAM_BANK_0_START, AddressMap.WRAM_BANK_1_END);
     private final RamController workRamEchoController = new RamController(workRam, AddressMap.ECHO_RAM_START, AddressMap.ECHO_RAM_END);
@@ -30,11 +38,30 @@ public final class GameBoy {
     private final Timer timer = new Timer(cpu);
     private final LcdController lcdController = new LcdController(cpu);
     private final Joypad joypad = new Joypad(cpu);
+    private final Apu apu = new Apu();
+    private final SerialPort serialPort = new SerialPort(cpu);
+    // Les composants synchrones autres que le processeur, dans l'ordre dans lequel
+    // ils sont cyclés; un nouveau composant synchrone n'est à ajouter qu'ici
+    private final Clocked[] peripherals = { timer, lcdController, apu, serialPort };
+    // Les composants synchrones, dans l'ordre dans lequel ils sont cyclés: les
+    // périphériques, puis le processeur
+    private final Clocked[] clockedComponents = withLast(peripherals, cpu);
+    // Les composants sauvegardés, dans l'ordre dans lequel ils le sont (la
+    // cartouche en premier, afin qu'un état d'une autre cartouche soit refusé
+    // avant que quoi que ce soit ne soit modifié)
+    private final Snapshottable[] snapshottableComponents;
 
     public static final long CYCLES_PER_SECOND = (long) Math.pow(2, 20);
     public static final double CYCLES_PER_NANOSECOND = CYCLES_PER_SECOND / Math.pow(10, 9);
 
+    // Les états sauvegardés commencent par "GBJS" puis la version de leur format
+    private static final int STATE_MAGIC = 0x47424A53;
+    public static final int STATE_VERSION = 3;
+
     private long currentCycle;
+    // Le dernier cycle lors duquel un composant autre que le processeur a travaillé
+    // (ou lors duquel les entrées ont pu changer)
+    private long lastPeripheralEventCycle;
 
     /**
      * Constructeur qui initialise une Gameboy avec une cartouche donnée.
@@ -46,24 +73,68 @@ public final class GameBoy {
      *             si la cartouche est null
      */
     public GameBoy(Cartridge cartridge) {
-        bootRomController = new BootRomController(Objects.requireNonNull(cartridge));
+        this.cartridge = Objects.requireNonNull(cartridge);
+        bootRomController = new BootRomController(cartridge);
         bootRomController.attachTo(bus);
 
         workRamController.attachTo(bus);
         workRamEchoController.attachTo(bus);
 
         cpu.attachTo(bus);
+        cpu.setRomBanks(bootRomController::romMappingAt, bootRomController.romMappingCount());
 
         timer.attachTo(bus);
 
         lcdController.attachTo(bus);
 
         joypad.attachTo(bus);
+
+        apu.attachTo(bus);
+
+        serialPort.attachTo(bus);
+
+        snapshottableComponents = new Snapshottable[] { cartridge, bootRomController, workRam, cpu, timer,
+                lcdController, joypad, apu, serialPort };
+    }
+
+    // Construit une copie indépendante de la Gameboy donnée (voir copy)
+    private GameBoy(GameBoy original) {
+        this(original.cartridge.copy());
+
+        workRam.copyFrom(original.workRam);
+        bootRomController.copyStateFrom(original.bootRomController);
+        cpu.copyStateFrom(original.cpu);
+        timer.copyStateFrom(original.timer);
+        lcdController.copyStateFrom(original.lcdController);
+        joypad.copyStateFrom(original.joypad);
+        apu.copyStateFrom(original.apu);
+        serialPort.copyStateFrom(original.serialPort);
+
+        currentCycle = original.currentCycle;
+        lastPeripheralEventCycle = original.lastPeripheralEventCycle;
+    }
+
+    /**
+     * Construit une copie indépendante de la Gameboy, dans le même état: la copie
+     * et l'originale peuvent ensuite évoluer séparément, y compris dans des fils
+     * différents. Seule la ROM de la cartouche, immuable, est partagée.
+     *
+     * @return la copie de la Gameboy
+     */
+    public GameBoy copy() {
+        return new GameBoy(this);
     }
 
     /**
      * Cette méthode dit à la Gameboy de continuer à fonctionner jusqu'à atteindre
-     * un certain cycle.
+     * un certain cycle. Les cycles lors desquels aucun composant synchrone n'a
+     * quelque chose à faire sont sautés, de même que les itérations des boucles
+     * d'attente active du processeur qui se terminent avant le prochain travail
+     * d'un autre composant.
+     *
+     * Une Gameboy reliée à une autre par un câble (voir SerialLink) peut
+     * s'arrêter avant le cycle donné, lorsqu'elle doit attendre que l'autre
+     * avance; getCycles donne alors le cycle atteint.
      *
      * @param cycle
      *            Le cycle maximal à atteindre
@@ -73,12 +144,138 @@ public final class GameBoy {
      */
     public void runUntil(long cycle) {
         Preconditions.checkArgument(currentCycle <= cycle);
+        // Les touches du joypad ne peuvent avoir changé qu'entre deux appels
+        lastPeripheralEventCycle = currentCycle;
+
         while (currentCycle < cycle) {
-            timer.cycle(currentCycle);
-            lcdController.cycle(currentCycle);
-            cpu.cycle(currentCycle);
+            long nextPeripheralEvent = nextPeripheralEventCycle();
+            cpu.skipIdleLoop(lastPeripheralEventCycle, Math.min(nextPeripheralEvent, cycle));
+
+            long nextEvent = Math.min(nextPeripheralEvent, cpu.nextEventCycle(currentCycle));
+            if (nextEvent >= cycle) {
+                currentCycle = cycle;
+                break;
+            }
+
+            currentCycle = nextEvent;
+            if (!serialPort.canRun(currentCycle)) {
+                break;
+            }
+            if (nextPeripheralEvent == nextEvent) {
+                lastPeripheralEventCycle = nextEvent;
+            }
+            for (Clocked c : clockedComponents) {
+                c.cycle(currentCycle);
+            }
             currentCycle++;
         }
+        // Une Gameboy reliée par un câble ne fait ainsi jamais attendre l'autre au-delà
+        // du cycle atteint
+        serialPort.reach(currentCycle);
+    }
+
+    /**
+     * Retourne la taille, en octets, d'un état sauvegardé de la Gameboy: l'en-tête
+     * (identifiant et version du format) et le cycle actuel, puis les états de la
+     * cartouche, de la mémoire de démarrage, de la mémoire de travail, du
+     * processeur, du timer, du contrôleur LCD, du Joypad, de l'unité de
+     * traitement audio et du port série.
+     *
+     * @return la taille de l'état sauvegardé
+     */
+    @Override
+    public int stateSize() {
+        int size = 2 * Integer.BYTES + Long.BYTES;
+        for (Snapshottable s : snapshottableComponents) {
+            size += s.stateSize();
+        }
+        return size;
+    }
+
+    /**
+     * Ecrit l'état de la Gameboy dans le tampon donné, toujours avec l'ordre des
+     * octets gros-boutiste, quel que soit celui du tampon.
+     *
+     * @param buffer
+     *            le tampon dans lequel écrire
+     * @throws java.nio.BufferOverflowException
+     *             s'il ne reste pas assez de place dans le tampon
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            buffer.putInt(STATE_MAGIC);
+            buffer.putInt(STATE_VERSION);
+            buffer.putLong(currentCycle);
+            for (Snapshottable s : snapshottableComponents) {
+                s.saveState(buffer);
+            }
+        } finally {
+            buffer.order(order);
+        }
+    }
+
+    /**
+     * Sauvegarde l'état de la Gameboy dans un nouveau tampon direct.
+     *
+     * @return le tampon contenant l'état, prêt à être lu
+     */
+    public ByteBuffer saveState() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(stateSize());
+        saveState(buffer);
+        return buffer.flip();
+    }
+
+    /**
+     * Remplace l'état de la Gameboy par celui lu dans le tampon donné, qui doit
+     * avoir été sauvegardé par une Gameboy exécutant la même cartouche.
+     *
+     * @param buffer
+     *            le tampon dans lequel lire
+     * @throws java.nio.BufferUnderflowException
+     *             s'il ne reste pas assez d'octets dans le tampon
+     * @throws IllegalArgumentException
+     *             si le tampon ne contient pas un état de la version actuelle du
+     *             format, ou s'il a été sauvegardé avec une autre cartouche
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            Preconditions.checkArgument(buffer.getInt() == STATE_MAGIC, "Not a saved state");
+            Preconditions.checkArgument(buffer.getInt() == STATE_VERSION, "Unsupported saved state version");
+            long cycle = buffer.getLong();
+            for (Snapshottable s : snapshottableComponents) {
+                s.loadState(buffer);
+            }
+            currentCycle = cycle;
+            lastPeripheralEventCycle = cycle;
+        } finally {
+            buffer.order(order);
+        }
+    }
+
+    /**
+     * Cette méthode calcule le prochain cycle lors duquel au moins un des
+     * composants synchrones autres que le processeur a quelque chose à faire.
+     *
+     * @return le prochain cycle actif des composants autres que le processeur
+     */
+    private long nextPeripheralEventCycle() {
+        long next = Long.MAX_VALUE;
+        for (Clocked c : peripherals) {
+            next = Math.min(next, c.nextEventCycle(currentCycle));
+        }
+        return next;
+    }
+
+    private static Clocked[] withLast(Clocked[] components, Clocked last) {
+        Clocked[] all = Arrays.copyOf(components, components.length + 1);
+        all[components.length] = last;
+        return all;
     }
 
     public long getCycles() {
@@ -104,4 +301,12 @@ public final class GameBoy {
     public Joypad getJoypad() {
         return joypad;
     }
+
+    public Apu getApu() {
+        return apu;
+    }
+
+    public SerialPort getSerialPort() {
+        return serialPort;
+    }
 }
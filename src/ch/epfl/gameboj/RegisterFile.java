@@ -117,4 +117,19 @@ public final class RegisterFile<E extends Register> {
 	public void setBit(E reg, Bit bit, boolean newValue) {
 		set(reg, Bits.set(get(reg), bit.index(), newValue));
 	}
+
+	/**
+	 * Remplace la valeur de tous les registres du banc par celle des registres du
+	 * banc donné.
+	 *
+	 * @param other
+	 *            le banc dont les registres sont copiés
+	 *
+	 * @throws IllegalArgumentException
+	 *             si les deux bancs n'ont pas le même nombre de registres
+	 */
+	public void copyFrom(RegisterFile<E> other) {
+		Preconditions.checkArgument(other.registerFile.length == registerFile.length);
+		System.arraycopy(other.registerFile, 0, registerFile, 0, registerFile.length);
+	}
 }
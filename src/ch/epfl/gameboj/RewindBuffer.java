@@ -0,0 +1,278 @@
+package ch.epfl.gameboj;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Cette classe modélise un tampon circulaire permettant de revenir en arrière
+ * dans l'émulation d'une Gameboy: l'état complet de la machine est capturé à
+ * chaque image, dans une taille mémoire bornée.
+ *
+ * Les états sont regroupés: le premier état d'un groupe (l'image clé) est
+ * stocké en entier, les suivants sous la forme de leur différence (OU exclusif)
+ * avec l'image clé. Dans les deux cas, les suites d'octets nuls sont
+ * compressées (RLE), de sorte que seules les parties de la mémoire qui ont
+ * changé depuis l'image clé occupent de la place. Restaurer un état ne demande
+ * donc jamais que de décoder une image clé et une différence.
+ *
+ * Lorsque la mémoire utilisée dépasse le budget, les groupes les plus anciens
+ * sont oubliés.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class RewindBuffer {
+
+    // Un groupe d'états: l'image clé encodée et les différences qui la suivent
+    private static final class Group {
+        final byte[] keyframe;
+        final List<byte[]> deltas = new ArrayList<>();
+        long memoryUsage;
+
+        Group(byte[] keyframe) {
+            this.keyframe = keyframe;
+            memoryUsage = keyframe.length;
+        }
+
+        int size() {
+            return 1 + deltas.size();
+        }
+    }
+
+    private final GameBoy gameBoy;
+    private final long memoryBudget;
+    private final int keyframeInterval;
+
+    private final ArrayDeque<Group> groups = new ArrayDeque<>();
+    private int size;
+    private long memoryUsage;
+
+    // L'état actuel de la Gameboy et l'image clé du dernier groupe, décodés
+    private final byte[] state, keyframeState;
+    private final ByteBuffer stateBuffer;
+    // Le tampon dans lequel les états sont encodés, assez grand pour le pire cas
+    private final byte[] encoded;
+
+    /**
+     * Construit un tampon de retour en arrière pour la Gameboy donnée.
+     *
+     * @param gameBoy
+     *            la Gameboy dont les états sont capturés
+     * @param memoryBudget
+     *            la taille mémoire maximale, en octets, des états stockés
+     * @param keyframeInterval
+     *            le nombre d'états par groupe (une image clé suivie de différences)
+     * @throws NullPointerException
+     *             si la Gameboy est nulle
+     * @throws IllegalArgumentException
+     *             si le budget ou l'intervalle n'est pas strictement positif
+     */
+    public RewindBuffer(GameBoy gameBoy, long memoryBudget, int keyframeInterval) {
+        Preconditions.checkArgument(memoryBudget > 0 && keyframeInterval > 0);
+        this.gameBoy = Objects.requireNonNull(gameBoy);
+        this.memoryBudget = memoryBudget;
+        this.keyframeInterval = keyframeInterval;
+
+        int stateSize = gameBoy.stateSize();
+        state = new byte[stateSize];
+        keyframeState = new byte[stateSize];
+        stateBuffer = ByteBuffer.wrap(state);
+        encoded = new byte[2 * stateSize + 2 * Integer.BYTES];
+    }
+
+    /**
+     * Capture l'état actuel de la Gameboy, qui devient le plus récent du tampon.
+     * Cette méthode est typiquement appelée une fois par image.
+     */
+    public void capture() {
+        stateBuffer.clear();
+        gameBoy.saveState(stateBuffer);
+
+        Group last = groups.peekLast();
+        if (last == null || last.size() == keyframeInterval) {
+            last = new Group(encode(state, null));
+            System.arraycopy(state, 0, keyframeState, 0, state.length);
+            groups.addLast(last);
+            memoryUsage += last.memoryUsage;
+        } else {
+            byte[] delta = encode(state, keyframeState);
+            last.deltas.add(delta);
+            last.memoryUsage += delta.length;
+            memoryUsage += delta.length;
+        }
+        ++size;
+
+        // Les groupes les plus anciens sont oubliés, mais jamais le plus récent
+        while (memoryUsage > memoryBudget && groups.size() > 1) {
+            Group oldest = groups.removeFirst();
+            memoryUsage -= oldest.memoryUsage;
+            size -= oldest.size();
+        }
+    }
+
+    /**
+     * Restaure l'état capturé le nombre d'images donné avant le plus récent, sans
+     * oublier les états plus récents.
+     *
+     * @param framesBack
+     *            le nombre d'images à remonter (0 pour l'état le plus récent)
+     * @throws IndexOutOfBoundsException
+     *             si aucun état n'a été capturé à ce moment-là
+     */
+    public void restore(int framesBack) {
+        Objects.checkIndex(framesBack, size);
+
+        // Recherche le groupe de l'état, en partant du plus récent
+        int remaining = framesBack;
+        Iterator<Group> it = groups.descendingIterator();
+        Group group = it.next();
+        while (remaining >= group.size()) {
+            remaining -= group.size();
+            group = it.next();
+        }
+        int index = group.size() - 1 - remaining;
+
+        decode(group.keyframe, null, keyframeState);
+        if (index == 0) {
+            System.arraycopy(keyframeState, 0, state, 0, state.length);
+        } else {
+            decode(group.deltas.get(index - 1), keyframeState, state);
+        }
+        stateBuffer.clear();
+        gameBoy.loadState(stateBuffer);
+
+        // L'image clé décodée doit rester celle du dernier groupe
+        if (group != groups.peekLast()) {
+            decode(groups.peekLast().keyframe, null, keyframeState);
+        }
+    }
+
+    /**
+     * Revient le nombre d'images donné en arrière: restaure l'état correspondant et
+     * oublie tous les états plus récents, de sorte que les prochaines captures le
+     * suivent.
+     *
+     * @param framesBack
+     *            le nombre d'images à remonter (0 pour l'état le plus récent)
+     * @throws IndexOutOfBoundsException
+     *             si aucun état n'a été capturé à ce moment-là
+     */
+    public void rewind(int framesBack) {
+        restore(framesBack);
+
+        for (int i = 0; i < framesBack; ++i) {
+            Group last = groups.peekLast();
+            if (last.deltas.isEmpty()) {
+                groups.removeLast();
+                memoryUsage -= last.memoryUsage;
+            } else {
+                byte[] delta = last.deltas.remove(last.deltas.size() - 1);
+                last.memoryUsage -= delta.length;
+                memoryUsage -= delta.length;
+            }
+        }
+        size -= framesBack;
+
+        if (groups.peekLast() != null) {
+            decode(groups.peekLast().keyframe, null, keyframeState);
+        }
+    }
+
+    /**
+     * Retourne le nombre d'états capturés encore disponibles.
+     *
+     * @return le nombre d'images que l'on peut remonter, plus un
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retourne la taille mémoire, en octets, des états stockés.
+     *
+     * @return la mémoire utilisée
+     */
+    public long memoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * Encode un état sous la forme d'une suite de blocs, chacun formé du nombre
+     * d'octets identiques à la base, du nombre d'octets différents, puis de ces
+     * derniers combinés par OU exclusif avec la base (une base nulle valant zéro
+     * partout).
+     */
+    private byte[] encode(byte[] value, byte[] base) {
+        int length = 0;
+        int i = 0;
+        while (i < value.length) {
+            int sameStart = i;
+            while (i < value.length && value[i] == baseAt(base, i)) {
+                ++i;
+            }
+            int diffStart = i;
+            while (i < value.length && value[i] != baseAt(base, i)) {
+                ++i;
+            }
+
+            length = putVarInt(encoded, length, diffStart - sameStart);
+            length = putVarInt(encoded, length, i - diffStart);
+            for (int j = diffStart; j < i; ++j) {
+                encoded[length++] = (byte) (value[j] ^ baseAt(base, j));
+            }
+        }
+        return Arrays.copyOf(encoded, length);
+    }
+
+    private static void decode(byte[] encodedValue, byte[] base, byte[] destination) {
+        if (base == null) {
+            Arrays.fill(destination, (byte) 0);
+        } else {
+            System.arraycopy(base, 0, destination, 0, destination.length);
+        }
+
+        int position = 0;
+        int i = 0;
+        while (position < encodedValue.length) {
+            int same = 0, diff = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = encodedValue[position++];
+                same |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+            for (int shift = 0;; shift += 7) {
+                byte b = encodedValue[position++];
+                diff |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+
+            i += same;
+            for (int end = i + diff; i < end; ++i) {
+                destination[i] ^= encodedValue[position++];
+            }
+        }
+    }
+
+    private static byte baseAt(byte[] base, int index) {
+        return base == null ? 0 : base[index];
+    }
+
+    // Ecrit un entier positif par groupes de 7 bits, le bit de poids fort de
+    // chaque octet indiquant qu'un autre suit
+    private static int putVarInt(byte[] destination, int position, int value) {
+        while (value >= 0x80) {
+            destination[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        destination[position++] = (byte) value;
+        return position;
+    }
+}
@@ -0,0 +1,100 @@
+package ch.epfl.gameboj.audio;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+import ch.epfl.gameboj.component.sound.Apu;
+
+/**
+ * Cette classe modélise la sortie audio de l'émulateur: un fil dédié vide un
+ * tampon circulaire d'échantillons et les écrit sur une ligne audio
+ * (javax.sound.sampled), de sorte que ni l'émulation ni l'interface ne sont
+ * jamais bloquées par la carte son.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class LineOutput implements AutoCloseable {
+
+    // Les échantillons sont signés, de 16 bits, petit-boutistes
+    private static final int SAMPLE_BITS = 16;
+    // La taille du tampon de la ligne, environ 50 ms
+    private static final int LINE_BUFFER_BYTES = Apu.SAMPLE_RATE / 20 * Apu.OUTPUT_CHANNELS * Short.BYTES;
+    // Le nombre maximal d'échantillons écrits à la fois sur la ligne
+    private static final int CHUNK_SAMPLES = 1024;
+    // Le temps d'attente du fil lorsque le tampon circulaire est vide
+    private static final long IDLE_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final SampleRingBuffer samples;
+    private final SourceDataLine line;
+    private final Thread writerThread;
+
+    /**
+     * Ouvre la ligne audio par défaut et démarre le fil qui y écrit les
+     * échantillons du tampon donné.
+     *
+     * @param samples
+     *            le tampon dont les échantillons sont joués
+     * @throws NullPointerException
+     *             si le tampon est nul
+     * @throws LineUnavailableException
+     *             si aucune ligne audio n'est disponible
+     */
+    public LineOutput(SampleRingBuffer samples) throws LineUnavailableException {
+        this.samples = Objects.requireNonNull(samples);
+
+        AudioFormat format = new AudioFormat(Apu.SAMPLE_RATE, SAMPLE_BITS, Apu.OUTPUT_CHANNELS, true, false);
+        line = AudioSystem.getSourceDataLine(format);
+        line.open(format, LINE_BUFFER_BYTES);
+        line.start();
+
+        writerThread = new Thread(this::writeSamples, "gameboj-audio");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // Le corps du fil d'écriture, qui tourne jusqu'à son interruption
+    private void writeSamples() {
+        short[] chunk = new short[CHUNK_SAMPLES];
+        byte[] bytes = new byte[CHUNK_SAMPLES * Short.BYTES];
+
+        while (!Thread.currentThread().isInterrupted()) {
+            int count = samples.read(chunk, 0, chunk.length);
+            if (count == 0) {
+                LockSupport.parkNanos(IDLE_PAUSE_NANOS);
+                continue;
+            }
+            for (int i = 0; i < count; ++i) {
+                bytes[2 * i] = (byte) chunk[i];
+                bytes[2 * i + 1] = (byte) (chunk[i] >> Byte.SIZE);
+            }
+            // Bloque tant que la ligne n'a pas de place, ce qui règle le rythme du fil
+            line.write(bytes, 0, count * Short.BYTES);
+        }
+    }
+
+    /**
+     * Arrête le fil d'écriture et ferme la ligne audio. La ligne est fermée même
+     * si le fil appelant est interrompu en attendant la fin du fil d'écriture,
+     * auquel cas son statut d'interruption est rétabli.
+     */
+    @Override
+    public void close() {
+        writerThread.interrupt();
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            line.stop();
+            line.close();
+        }
+    }
+}
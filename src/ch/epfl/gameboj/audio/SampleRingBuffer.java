@@ -0,0 +1,113 @@
+package ch.epfl.gameboj.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.sound.Apu;
+import ch.epfl.gameboj.component.sound.SampleSink;
+
+/**
+ * Cette classe modélise un tampon circulaire d'échantillons sans verrou,
+ * permettant à un unique producteur (le fil d'émulation, par l'unité de
+ * traitement audio) de transmettre des échantillons à un unique consommateur
+ * (le fil qui les écrit sur la sortie audio).
+ *
+ * Le producteur n'écrit que la queue et le consommateur que la tête, chacun
+ * publiant sa position après avoir écrit ou lu les échantillons concernés. Le
+ * producteur n'attend jamais: les échantillons qui ne trouvent pas de place
+ * dans le tampon sont ignorés.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class SampleRingBuffer implements SampleSink {
+
+    private final short[] samples;
+    private final int mask;
+
+    // Le nombre total d'échantillons lus (la tête) et écrits (la queue)
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    // Le nombre d'échantillons ignorés faute de place, lu par le consommateur
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Construit un tampon pouvant contenir le nombre d'échantillons donné.
+     *
+     * @param capacity
+     *            la capacité du tampon, une puissance de deux d'au moins
+     *            Apu.OUTPUT_CHANNELS échantillons
+     * @throws IllegalArgumentException
+     *             si la capacité n'est pas une puissance de deux ou est trop petite
+     */
+    public SampleRingBuffer(int capacity) {
+        Preconditions.checkArgument(capacity >= Apu.OUTPUT_CHANNELS && Integer.bitCount(capacity) == 1);
+        samples = new short[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Ecrit dans le tampon autant des échantillons donnés qu'il y a de place, par
+     * paires (gauche et droite). Cette méthode ne doit être appelée que par le
+     * producteur.
+     */
+    @Override
+    public void write(short[] source, int offset, int length) {
+        long t = tail.get();
+        int free = samples.length - (int) (t - head.get());
+        int count = Math.min(length, free) & -Apu.OUTPUT_CHANNELS;
+        // La partie concernée du tampon peut faire le tour de la fin du tableau
+        int index = (int) t & mask;
+        int first = Math.min(count, samples.length - index);
+        System.arraycopy(source, offset, samples, index, first);
+        System.arraycopy(source, offset + first, samples, 0, count - first);
+        tail.lazySet(t + count);
+        if (count < length) {
+            dropped.addAndGet(length - count);
+        }
+    }
+
+    /**
+     * Lit au plus le nombre d'échantillons donné, par paires, et les retire du
+     * tampon. Cette méthode ne doit être appelée que par le consommateur.
+     *
+     * @param destination
+     *            le tableau dans lequel écrire les échantillons
+     * @param offset
+     *            l'index du premier échantillon à écrire
+     * @param length
+     *            le nombre maximal d'échantillons à lire
+     * @return le nombre d'échantillons lus, éventuellement nul
+     */
+    public int read(short[] destination, int offset, int length) {
+        long h = head.get();
+        int available = (int) (tail.get() - h);
+        int count = Math.min(length, available) & -Apu.OUTPUT_CHANNELS;
+        int index = (int) h & mask;
+        int first = Math.min(count, samples.length - index);
+        System.arraycopy(samples, index, destination, offset, first);
+        System.arraycopy(samples, 0, destination, offset + first, count - first);
+        head.lazySet(h + count);
+        return count;
+    }
+
+    /**
+     * Retourne le nombre d'échantillons actuellement dans le tampon.
+     *
+     * @return le nombre d'échantillons en attente
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Retourne le nombre total d'échantillons ignorés parce que le tampon était
+     * plein.
+     *
+     * @return le nombre d'échantillons ignorés
+     */
+    public long droppedSamples() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,154 @@
+package ch.epfl.gameboj.audio;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.sound.Apu;
+import ch.epfl.gameboj.component.sound.SampleSink;
+
+/**
+ * Cette classe modélise un récepteur d'échantillons qui les écrit dans un
+ * fichier WAV (PCM signé de 16 bits, stéréo), permettant d'enregistrer le son
+ * d'une émulation sans interface graphique ni carte son.
+ *
+ * L'en-tête du fichier, qui contient la taille des données, est écrit à la
+ * fermeture.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class WavWriter implements SampleSink, AutoCloseable {
+
+    private static final int HEADER_SIZE = 44;
+    private static final int FORMAT_CHUNK_SIZE = 16, PCM_FORMAT = 1, SAMPLE_BITS = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long dataSize;
+
+    /**
+     * Crée (ou remplace) le fichier WAV donné.
+     *
+     * @param file
+     *            le fichier
+     * @throws IOException
+     *             si le fichier ne peut être créé
+     */
+    public WavWriter(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(HEADER_SIZE);
+    }
+
+    /**
+     * Ecrit les échantillons donnés à la suite du fichier.
+     *
+     * @throws UncheckedIOException
+     *             en cas d'erreur d'écriture
+     */
+    @Override
+    public void write(short[] samples, int offset, int length) {
+        try {
+            for (int i = offset; i < offset + length; ++i) {
+                if (!buffer.hasRemaining()) {
+                    writeBuffer();
+                }
+                buffer.putShort(samples[i]);
+            }
+            dataSize += length * Short.BYTES;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Retourne la durée, en secondes, du son écrit jusque là.
+     *
+     * @return la durée du son
+     */
+    public double duration() {
+        return dataSize / (double) (Apu.SAMPLE_RATE * Apu.OUTPUT_CHANNELS * Short.BYTES);
+    }
+
+    /**
+     * Ecrit les derniers échantillons et l'en-tête, puis ferme le fichier.
+     *
+     * @throws IOException
+     *             en cas d'erreur d'écriture
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBuffer();
+
+            int blockAlign = Apu.OUTPUT_CHANNELS * Short.BYTES;
+            buffer.put("RIFF".getBytes(US_ASCII));
+            buffer.putInt((int) (HEADER_SIZE - 8 + dataSize));
+            buffer.put("WAVEfmt ".getBytes(US_ASCII));
+            buffer.putInt(FORMAT_CHUNK_SIZE);
+            buffer.putShort((short) PCM_FORMAT);
+            buffer.putShort((short) Apu.OUTPUT_CHANNELS);
+            buffer.putInt(Apu.SAMPLE_RATE);
+            buffer.putInt(Apu.SAMPLE_RATE * blockAlign);
+            buffer.putShort((short) blockAlign);
+            buffer.putShort((short) SAMPLE_BITS);
+            buffer.put("data".getBytes(US_ASCII));
+            buffer.putInt((int) dataSize);
+            channel.position(0);
+            writeBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Point d'entrée permettant d'enregistrer le son d'une cartouche sans
+     * interface graphique, aussi vite que possible.
+     *
+     * Arguments: fichier ROM, fichier WAV, durée en secondes (émulées).
+     *
+     * @param args
+     *            les arguments de lancement
+     * @throws IOException
+     *             si la ROM ne peut être lue ou le fichier WAV écrit
+     */
+    public static void main(String[] args) throws IOException {
+        Preconditions.checkArgument(args.length == 3, () -> {
+            System.err.println("Usage: WavWriter <rom> <wav> <seconds>");
+            System.exit(1);
+        });
+
+        GameBoy gameBoy = new GameBoy(Cartridge.ofFile(new File(args[0])));
+        long cycles = (long) (Double.parseDouble(args[2]) * GameBoy.CYCLES_PER_SECOND);
+
+        try (WavWriter wav = new WavWriter(new File(args[1]))) {
+            gameBoy.getApu().setSink(wav);
+            long start = System.nanoTime();
+            gameBoy.runUntil(cycles);
+            gameBoy.getApu().flush();
+            long elapsed = System.nanoTime() - start;
+
+            System.out.printf("%.1f s of sound in %d ms%n", wav.duration(), elapsed / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * This package contains the receivers of the samples produced by the audio
+ * processing unit: a lock-free ring buffer drained by a sound line writer
+ * thread, and a WAV file writer for headless runs.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+package ch.epfl.gameboj.audio;
@@ -199,6 +199,19 @@ public final class BitVector {
 		return Arrays.copyOf(this.bitVector, this.bitVector.length);
 	}
 
+	/**
+	 * Ce getter retourne l'un des entiers du tableau sous-jacent, sans le copier.
+	 * 
+	 * @param index
+	 *            l'index de l'entier (les bits 32 * index à 32 * index + 31)
+	 * @return l'entier
+	 * @throws IndexOutOfBoundsException
+	 *             si l'index n'est pas valide
+	 */
+	public int getInt(int index) {
+		return bitVector[Objects.checkIndex(index, bitVector.length)];
+	}
+
 	/**
 	 * Ce getter retourne la taille du vecteur en bits.
 	 * 
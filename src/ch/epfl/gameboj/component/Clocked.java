@@ -10,4 +10,21 @@ package ch.epfl.gameboj.component;
 public interface Clocked {
 
     void cycle(long cycle);
+
+    /**
+     * Retourne le prochain cycle, supérieur ou égal au cycle donné, lors duquel le
+     * composant a quelque chose à faire. Appeler {@link #cycle(long)} lors de tout
+     * cycle antérieur ne doit avoir aucun effet, ce qui permet à la Gameboy de les
+     * sauter.
+     * 
+     * Par défaut, le composant est considéré comme actif à chaque cycle.
+     *
+     * @param cycle
+     *            le cycle actuel
+     * @return le prochain cycle actif, ou Long.MAX_VALUE si le composant est inactif
+     *         jusqu'à nouvel ordre
+     */
+    default long nextEventCycle(long cycle) {
+        return cycle;
+    }
 }
@@ -36,7 +36,37 @@ public interface Component {
      */
     void write(int address, int data);
     
+    /**
+     * Indique si le composant possède des données dans la page (bloc de 256
+     * octets) d'index donné. Le bus ne transmet les lectures et écritures d'une
+     * page qu'aux composants qui y sont attachés, un composant doit donc retourner
+     * vrai pour toute page contenant une adresse qu'il gère.
+     * 
+     * Par défaut, un composant est attaché à toutes les pages.
+     * 
+     * @param page
+     *            l'index de la page, i.e. l'octet de poids fort des adresses
+     * @return vrai si le composant doit recevoir les accès à cette page
+     */
+    default boolean isMappedToPage(int page) {
+        return true;
+    }
     
+    /**
+     * Indique si la page d'index donné contient au moins une adresse de la plage
+     * donnée.
+     * 
+     * @param page
+     *            l'index de la page
+     * @param startAddress
+     *            l'adresse de début de la plage (incluse)
+     * @param endAddress
+     *            l'adresse de fin de la plage (exclue)
+     * @return vrai si la page et la plage s'intersectent
+     */
+    static boolean pageIntersects(int page, int startAddress, int endAddress) {
+        return page << Byte.SIZE < endAddress && (page + 1) << Byte.SIZE > startAddress;
+    }
     
     /**
      * Attache le composant au bus donné.
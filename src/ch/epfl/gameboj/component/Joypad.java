@@ -1,5 +1,6 @@
 package ch.epfl.gameboj.component;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import ch.epfl.gameboj.AddressMap;
@@ -16,7 +17,7 @@ import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
  * @author David Cian (287967)
  *
  */
-public final class Joypad implements Component {
+public final class Joypad implements Component, Snapshottable {
 	private final Cpu cpu;
 
 	private int regP1 = 0;
@@ -93,14 +94,18 @@ public final class Joypad implements Component {
 
 	@Override
 	public int read(int address) {
+		if (Preconditions.checkBits16(address) != AddressMap.REG_P1) {
+			return NO_DATA;
+		}
+
 		/* Comme la méthode read est la seule interface permettant d'obtenir la valeur 
-		 * du registre P1, celui-ci n'est calculé que lors de la lecture.
+		 * du registre P1, celui-ci n'est calculé que lors de sa lecture.
 		 */
 		computeP1();
 
 		// Les valeurs sont "active-low", donc pour maintenir une classe plus logique,
 		// les données sont inversées à la lecture
-		return Preconditions.checkBits16(address) == AddressMap.REG_P1 ? Bits.complement8(regP1) : NO_DATA;
+		return Bits.complement8(regP1);
 	}
 
 	@Override
@@ -111,4 +116,45 @@ public final class Joypad implements Component {
 			regP1 = (regP1 & 0b1100_1111) | (Bits.complement8(Preconditions.checkBits8(data)) & 0b0011_0000);
 		}
 	}
+
+	@Override
+	public boolean isMappedToPage(int page) {
+		return Component.pageIntersects(page, AddressMap.REG_P1, AddressMap.REG_P1 + 1);
+	}
+
+	/**
+	 * Copie l'état du Joypad donné (registre P1 et touches appuyées).
+	 * 
+	 * @param other
+	 *            le Joypad dont l'état est copié
+	 */
+	public void copyStateFrom(Joypad other) {
+		regP1 = other.regP1;
+		line0 = other.line0;
+		line1 = other.line1;
+	}
+
+	/**
+	 * L'état du Joypad est son registre P1 et les touches appuyées.
+	 * 
+	 * @return la taille de l'état sauvegardé
+	 */
+	@Override
+	public int stateSize() {
+		return 3;
+	}
+
+	@Override
+	public void saveState(ByteBuffer buffer) {
+		buffer.put((byte) regP1);
+		buffer.put((byte) line0);
+		buffer.put((byte) line1);
+	}
+
+	@Override
+	public void loadState(ByteBuffer buffer) {
+		regP1 = Byte.toUnsignedInt(buffer.get());
+		line0 = Bits.clip(LINE_LENGTH, buffer.get());
+		line1 = Bits.clip(LINE_LENGTH, buffer.get());
+	}
 }
@@ -0,0 +1,50 @@
+package ch.epfl.gameboj.component;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cette interface désigne les composants dont l'état peut être sauvegardé dans
+ * un tampon d'octets, puis restauré, par exemple dans un autre composant du
+ * même type.
+ *
+ * Un composant écrit toujours exactement {@link #stateSize()} octets, et relit
+ * exactement ceux qu'il a écrits, dans le même ordre. Seul l'état du composant
+ * est sauvegardé, pas les autres composants auxquels il est lié.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public interface Snapshottable {
+
+    /**
+     * Retourne la taille, en octets, de l'état sauvegardé du composant.
+     *
+     * @return la taille de l'état sauvegardé
+     */
+    int stateSize();
+
+    /**
+     * Ecrit l'état du composant dans le tampon donné, à partir de sa position
+     * actuelle, qui avance de {@link #stateSize()} octets.
+     *
+     * @param buffer
+     *            le tampon dans lequel écrire
+     * @throws java.nio.BufferOverflowException
+     *             s'il ne reste pas assez de place dans le tampon
+     */
+    void saveState(ByteBuffer buffer);
+
+    /**
+     * Remplace l'état du composant par celui lu dans le tampon donné, à partir de
+     * sa position actuelle, qui avance de {@link #stateSize()} octets.
+     *
+     * @param buffer
+     *            le tampon dans lequel lire
+     * @throws java.nio.BufferUnderflowException
+     *             s'il ne reste pas assez d'octets dans le tampon
+     * @throws IllegalArgumentException
+     *             si l'état lu n'est pas valide pour ce composant
+     */
+    void loadState(ByteBuffer buffer);
+}
@@ -4,11 +4,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Snapshottable;
 import ch.epfl.gameboj.component.memory.Rom;
 
 /**
@@ -18,8 +20,11 @@ import ch.epfl.gameboj.component.memory.Rom;
  * @author David Cian (287967)
  *
  */
-public final class Cartridge implements Component {
+public final class Cartridge implements Component, Snapshottable {
 	private static final int[] RAM_SIZES = new int[] { 0, 2048, 8192, 32768 };
+	// La signature de la ROM sauvegardée par les MBC: sa taille et sa somme de
+	// contrôle globale
+	static final int ROM_SIGNATURE_SIZE = Integer.BYTES + Short.BYTES;
 
 	private final Component mbc;
 
@@ -59,6 +64,109 @@ public final class Cartridge implements Component {
 		}
 	}
 
+	/**
+	 * Construit une copie indépendante de la cartouche, qui partage sa ROM
+	 * (immuable) mais pas l'état de son MBC.
+	 *
+	 * @return la copie de la cartouche
+	 */
+	public Cartridge copy() {
+		// Un MBC0 n'a aucun état modifiable, il peut être partagé
+		return mbc instanceof MBC1 ? new Cartridge(((MBC1) mbc).copy()) : new Cartridge(mbc);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Snapshottable#stateSize()
+	 */
+	@Override
+	public int stateSize() {
+		return mbcState().stateSize();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Snapshottable#saveState(ByteBuffer)
+	 */
+	@Override
+	public void saveState(ByteBuffer buffer) {
+		mbcState().saveState(buffer);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Snapshottable#loadState(ByteBuffer)
+	 */
+	@Override
+	public void loadState(ByteBuffer buffer) {
+		mbcState().loadState(buffer);
+	}
+
+	/**
+	 * Ecrit la signature de la ROM donnée (sa taille et sa somme de contrôle
+	 * globale), qui permet de vérifier qu'un état est restauré dans la même
+	 * cartouche.
+	 * 
+	 * @param rom
+	 *            la ROM
+	 * @param buffer
+	 *            le tampon dans lequel écrire
+	 */
+	static void saveRomSignature(Rom rom, ByteBuffer buffer) {
+		buffer.putInt(rom.size());
+		buffer.putShort((short) globalChecksum(rom));
+	}
+
+	/**
+	 * Lit une signature de ROM et vérifie qu'elle est celle de la ROM donnée.
+	 * 
+	 * @param rom
+	 *            la ROM
+	 * @param buffer
+	 *            le tampon dans lequel lire
+	 * @throws IllegalArgumentException
+	 *             si la signature lue n'est pas celle de la ROM
+	 */
+	static void checkRomSignature(Rom rom, ByteBuffer buffer) {
+		int size = buffer.getInt();
+		int checksum = Short.toUnsignedInt(buffer.getShort());
+		Preconditions.checkArgument(size == rom.size() && checksum == globalChecksum(rom),
+				"The state was saved with another cartridge");
+	}
+
+	private static int globalChecksum(Rom rom) {
+		return rom.size() < AddressMap.G_CHKSUM_END ? 0
+				: rom.read(AddressMap.G_CHKSUM_START) << Byte.SIZE | rom.read(AddressMap.G_CHKSUM_START + 1);
+	}
+
+	/**
+	 * Retourne la banque de la ROM projetée par le MBC à l'adresse donnée.
+	 * 
+	 * @param address
+	 *            l'adresse, dans la ROM (0x0000 à 0x7FFF)
+	 * @return le numéro de la banque, entre 0 et romBankCount() exclu
+	 */
+	public int romBankAt(int address) {
+		return mbc instanceof MBC1 ? ((MBC1) mbc).romBankAt(address) : ((MBC0) mbc).romBankAt(address);
+	}
+
+	/**
+	 * Retourne le nombre de banques de la ROM de la cartouche.
+	 * 
+	 * @return le nombre de banques
+	 */
+	public int romBankCount() {
+		return mbc instanceof MBC1 ? ((MBC1) mbc).romBankCount() : ((MBC0) mbc).romBankCount();
+	}
+
+	private Snapshottable mbcState() {
+		// Les MBC construits par ofFile sont tous sauvegardables
+		return (Snapshottable) mbc;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -79,4 +187,14 @@ public final class Cartridge implements Component {
 		mbc.write(Preconditions.checkBits16(address), Preconditions.checkBits8(data));
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Component#isMappedToPage(int)
+	 */
+	@Override
+	public boolean isMappedToPage(int page) {
+		return mbc.isMappedToPage(page);
+	}
+
 }
@@ -1,9 +1,12 @@
 package ch.epfl.gameboj.component.cartridge;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
+import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Snapshottable;
 import ch.epfl.gameboj.component.memory.Rom;
 
 /**
@@ -13,7 +16,7 @@ import ch.epfl.gameboj.component.memory.Rom;
  * @author David Cian (287967)
  *
  */
-public final class MBC0 implements Component {
+public final class MBC0 implements Component, Snapshottable {
 	// Ceci est la taille d'un Memory Bank Controller de type 0 (MBC0)
 	private static final int MBC0_SIZE = 32768;
 
@@ -64,4 +67,56 @@ public final class MBC0 implements Component {
 		Preconditions.checkBits16(address);
 		Preconditions.checkBits8(data);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ch.epfl.gameboj.component.Component#isMappedToPage(int)
+	 */
+	@Override
+	public boolean isMappedToPage(int page) {
+		return Component.pageIntersects(page, 0, MBC0_SIZE);
+	}
+
+	/**
+	 * Retourne la banque de la ROM projetée à l'adresse donnée, un MBC0 projetant
+	 * toujours ses deux banques aux mêmes adresses.
+	 *
+	 * @param address
+	 *            l'adresse, dans la ROM (0x0000 à 0x7FFF)
+	 * @return le numéro de la banque
+	 */
+	public int romBankAt(int address) {
+		return address / AddressMap.ROM_BANK_00_SIZE;
+	}
+
+	/**
+	 * Retourne le nombre de banques de la ROM.
+	 *
+	 * @return le nombre de banques
+	 */
+	public int romBankCount() {
+		return MBC0_SIZE / AddressMap.ROM_BANK_00_SIZE;
+	}
+
+	/**
+	 * Un MBC0 n'a aucun état modifiable, seule la signature de sa ROM est
+	 * sauvegardée.
+	 * 
+	 * @return la taille de la signature de la ROM
+	 */
+	@Override
+	public int stateSize() {
+		return Cartridge.ROM_SIGNATURE_SIZE;
+	}
+
+	@Override
+	public void saveState(ByteBuffer buffer) {
+		Cartridge.saveRomSignature(rom, buffer);
+	}
+
+	@Override
+	public void loadState(ByteBuffer buffer) {
+		Cartridge.checkRomSignature(rom, buffer);
+	}
 }
@@ -3,12 +3,17 @@ package ch.epfl.gameboj.component.cartridge;
 import static ch.epfl.gameboj.Preconditions.checkBits16;
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 
+import java.nio.ByteBuffer;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Snapshottable;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.Rom;
 
-public final class MBC1 implements Component {
+public final class MBC1 implements Component, Snapshottable {
     private static final int RAM_ENABLE = 0xA;
 
     private enum Mode { MODE_0, MODE_1 };
@@ -34,6 +39,22 @@ public final class MBC1 implements Component {
         this.ramMask = ramSize - 1;
     }
 
+    /**
+     * Construit une copie indépendante du MBC, qui partage sa ROM (immuable) mais
+     * pas sa RAM ni l'état de ses banques.
+     *
+     * @return la copie
+     */
+    public MBC1 copy() {
+        MBC1 copy = new MBC1(rom, ram.size());
+        copy.ram.copyFrom(ram);
+        copy.ramEnabled = ramEnabled;
+        copy.mode = mode;
+        copy.romLsb5 = romLsb5;
+        copy.ramRom2 = ramRom2;
+        return copy;
+    }
+
     public int read(int address) {
         switch (Bits.extract(checkBits16(address), 13, 3)) {
         case 0: case 1:
@@ -70,6 +91,34 @@ public final class MBC1 implements Component {
         }
     }
 
+    @Override
+    public boolean isMappedToPage(int page) {
+        return Component.pageIntersects(page, AddressMap.ROM_BANK_00_START, AddressMap.ROM_BANK_01_END)
+                || Component.pageIntersects(page, AddressMap.EXTERNAL_RAM_START, AddressMap.EXTERNAL_RAM_END);
+    }
+
+    /**
+     * Retourne la banque de la ROM projetée à l'adresse donnée.
+     *
+     * @param address
+     *            l'adresse, dans la ROM (0x0000 à 0x7FFF)
+     * @return le numéro de la banque
+     */
+    public int romBankAt(int address) {
+        int romAddress = address < AddressMap.ROM_BANK_01_START ? romAddress(msb2(), 0, address)
+                : romAddress(ramRom2, romLsb5, address);
+        return romAddress / AddressMap.ROM_BANK_00_SIZE;
+    }
+
+    /**
+     * Retourne le nombre de banques de la ROM.
+     *
+     * @return le nombre de banques
+     */
+    public int romBankCount() {
+        return rom.size() / AddressMap.ROM_BANK_00_SIZE;
+    }
+
     private int msb2() {
         switch (mode) {
         case MODE_0: return 0;
@@ -78,6 +127,36 @@ public final class MBC1 implements Component {
         }
     }
 
+    // La signature de la ROM, l'activation de la RAM, le mode, les registres des
+    // banques et enfin la RAM
+    @Override
+    public int stateSize() {
+        return Cartridge.ROM_SIGNATURE_SIZE + 4 + ram.stateSize();
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        Cartridge.saveRomSignature(rom, buffer);
+        buffer.put((byte) (ramEnabled ? 1 : 0));
+        buffer.put((byte) mode.ordinal());
+        buffer.put((byte) romLsb5);
+        buffer.put((byte) ramRom2);
+        ram.saveState(buffer);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        Cartridge.checkRomSignature(rom, buffer);
+        ramEnabled = buffer.get() != 0;
+        int modeIndex = buffer.get();
+        romLsb5 = buffer.get();
+        ramRom2 = buffer.get();
+        Preconditions.checkArgument(modeIndex >= 0 && modeIndex < Mode.values().length
+                && romLsb5 == Math.max(1, Bits.clip(5, romLsb5)) && ramRom2 == Bits.clip(2, ramRom2));
+        mode = Mode.values()[modeIndex];
+        ram.loadState(buffer);
+    }
+
     private int romAddress(int b_20_19, int b_18_14, int b_13_0) {
         return ((b_20_19 << 19) | (b_18_14 << 14) | Bits.clip(14, b_13_0)) & romMask;
     }
@@ -1,5 +1,9 @@
 package ch.epfl.gameboj.component.cpu;
 
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.function.IntUnaryOperator;
+
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
@@ -9,6 +13,7 @@ import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Snapshottable;
 import ch.epfl.gameboj.component.cpu.Alu.Flag;
 import ch.epfl.gameboj.component.cpu.Alu.RotDir;
 import ch.epfl.gameboj.component.memory.Ram;
@@ -20,9 +25,18 @@ import ch.epfl.gameboj.component.memory.Ram;
  * @author David Cian (287967)
  *
  */
-public final class Cpu implements Component, Clocked {
+public final class Cpu implements Component, Clocked, Snapshottable {
+    // Les registres 8 bits dans l'ordre de leur encodage dans les opcodes, (HL)
+    // ayant le code 6
+    private static final Reg[] REG_ENCODING = { Reg.B, Reg.C, Reg.D, Reg.E, Reg.H, Reg.L, null, Reg.A };
+    // Les paires de registres dans l'ordre de leur encodage dans les opcodes, AF
+    // désignant SP pour certaines familles
+    private static final Reg16[] REG16_ENCODING = { Reg16.BC, Reg16.DE, Reg16.HL, Reg16.AF };
+
     private static final Opcode[] DIRECT_OPCODE_TABLE = buildOpcodeTable(Opcode.Kind.DIRECT);
     private static final Opcode[] PREFIXED_OPCODE_TABLE = buildOpcodeTable(Opcode.Kind.PREFIXED);
+    private static final DecodedOpcode[] DIRECT_DECODED_TABLE = buildDecodedTable(DIRECT_OPCODE_TABLE);
+    private static final DecodedOpcode[] PREFIXED_DECODED_TABLE = buildDecodedTable(PREFIXED_OPCODE_TABLE);
 
     private static final int OPCODE_PREFIX = 0xCB;
 
@@ -59,6 +73,83 @@ public final class Cpu implements Component, Clocked {
         V0, V1, ALU, CPU
     };
 
+    // La dernière opération dont les fanions n'ont pas encore été calculés (NONE si
+    // le registre F est à jour)
+    private enum FlagOp {
+        NONE, ADD, SUB, INC, DEC, AND, OR, XOR
+    };
+
+    /**
+     * Cette classe représente un opcode décodé une fois pour toutes: les
+     * opérandes encodées dans l'opcode (registres, conditions, index de bit,
+     * etc.) y sont déjà extraites, de sorte que l'exécution d'une instruction
+     * n'a plus rien à décoder.
+     */
+    private static final class DecodedOpcode {
+        final Opcode.Family family;
+        final int totalBytes;
+        // Le nombre d'octets de l'opérande immédiate suivant l'opcode (0, 1 ou 2)
+        final int immediateBytes;
+        final int cycles, additionalCycles;
+        // Les registres encodés à partir des bits 0 et 3, null s'il s'agit de (HL)
+        final Reg reg0, reg3;
+        final Reg16 reg16;
+        final int hlIncrement;
+        final RotDir rotDir;
+        final int bitIndex, bitMask;
+        final boolean setValue;
+        final boolean usesCarry;
+        final boolean targetsHl;
+        final boolean enablesInterrupts;
+        // La condition est vraie si le fanion (Z ou C) vaut la valeur attendue
+        final boolean conditionOnZ, conditionValue;
+        final int resetAddress;
+
+        DecodedOpcode(Opcode opcode) {
+            int encoding = opcode.encoding;
+
+            family = opcode.family;
+            totalBytes = opcode.totalBytes;
+            immediateBytes = opcode.kind == Opcode.Kind.PREFIXED ? 0 : totalBytes - 1;
+            cycles = opcode.cycles;
+            additionalCycles = opcode.additionalCycles;
+
+            reg0 = REG_ENCODING[Bits.extract(encoding, 0, 3)];
+            reg3 = REG_ENCODING[Bits.extract(encoding, 3, 3)];
+            reg16 = REG16_ENCODING[Bits.extract(encoding, 4, 2)];
+            hlIncrement = Bits.test(encoding, 4) ? -1 : 1;
+            rotDir = Bits.test(encoding, 3) ? RotDir.RIGHT : RotDir.LEFT;
+            bitIndex = Bits.extract(encoding, 3, 3);
+            bitMask = Bits.mask(bitIndex);
+            setValue = Bits.test(encoding, 6);
+            usesCarry = Bits.test(encoding, 3);
+            targetsHl = Bits.test(encoding, 4);
+            enablesInterrupts = Bits.test(encoding, 3);
+
+            // 0: NZ, 1: Z, 2: NC, 3: C
+            int condition = Bits.extract(encoding, 3, 2);
+            conditionOnZ = condition < 2;
+            conditionValue = Bits.test(condition, 0);
+
+            resetAddress = AddressMap.RESETS[Bits.extract(encoding, 3, 3)];
+        }
+    }
+
+    /**
+     * Cette classe représente une instruction d'une banque de la ROM dont l'opcode
+     * a été décodé et l'opérande immédiate lue, valable pour toujours puisque le
+     * contenu de la banque ne change pas.
+     */
+    private static final class CachedInstruction {
+        final DecodedOpcode opcode;
+        final int immediate;
+
+        CachedInstruction(DecodedOpcode opcode, int immediate) {
+            this.opcode = opcode;
+            this.immediate = immediate;
+        }
+    }
+
     /**
      * Cette énumération donne les interruptions possibles du processeur, dans
      * l'ordre dans lequel elles apparaissent dans les registres IF et IE.
@@ -72,6 +163,42 @@ public final class Cpu implements Component, Clocked {
 
     private long nextNonIdleCycle;
 
+    // Donne la banque de ROM projetée à une adresse (voir setRomBanks), null si le
+    // processeur ne la connaît pas, auquel cas rien n'est mis en cache
+    private IntUnaryOperator romBanks;
+    // Les instructions déjà décodées de chaque banque de la ROM, indexées par leur
+    // adresse dans la banque; le tableau d'une banque est alloué lors de la
+    // première exécution d'une de ses instructions
+    private CachedInstruction[][] bankCaches;
+    // Les instructions des banques actuellement projetées en 0x0000-0x3FFF et
+    // 0x4000-0x7FFF
+    private CachedInstruction[] lowCache, highCache;
+    // L'opérande immédiate (8 ou 16 bits) de l'instruction en cours
+    private int immediate;
+
+    // Les opérandes et le résultat de la dernière opération arithmétique ou logique,
+    // à partir desquels les fanions ne sont calculés que s'ils sont lus
+    private FlagOp flagOp = FlagOp.NONE;
+    private int flagL, flagR, flagResult;
+    private boolean flagCarryIn, flagPreservedC;
+
+    // Détection des boucles d'attente active (voir skipIdleLoop): la tête de la
+    // dernière boucle courte parcourue, le cycle de la dernière arrivée en tête et
+    // l'état des registres à ce moment
+    private static final int NO_LOOP = -1;
+    private static final int MAX_IDLE_LOOP_BYTES = 16;
+    private int idleLoopHead = NO_LOOP;
+    private long idleLoopHeadCycle;
+    private long idleLoopRegisters;
+    // Vrai si rien n'a été écrit et seuls des registres scrutables ont été lus
+    // depuis la dernière arrivée en tête de boucle
+    private boolean idleLoopClean;
+    // La durée en cycles d'une itération de la boucle, 0 si elle n'est pas une
+    // boucle d'attente
+    private long idleLoopPeriod;
+    private int idleLoopSP;
+    private boolean idleLoopIME;
+
     private static Opcode[] buildOpcodeTable(Opcode.Kind opKind) {
         Opcode[] opcodeTable = new Opcode[256];
         for (Opcode o : Opcode.values()) {
@@ -82,6 +209,16 @@ public final class Cpu implements Component, Clocked {
         return opcodeTable;
     }
 
+    private static DecodedOpcode[] buildDecodedTable(Opcode[] opcodeTable) {
+        DecodedOpcode[] decodedTable = new DecodedOpcode[opcodeTable.length];
+        for (int i = 0; i < opcodeTable.length; ++i) {
+            if (opcodeTable[i] != null) {
+                decodedTable[i] = new DecodedOpcode(opcodeTable[i]);
+            }
+        }
+        return decodedTable;
+    }
+
     private int pendingInterrupts() {
         return IF & IE;
     }
@@ -124,44 +261,164 @@ public final class Cpu implements Component, Clocked {
         }
     }
 
+    /**
+     * Cette méthode retourne le prochain cycle lors duquel le processeur travaille.
+     * Lorsqu'il est arrêté (HALT), seule une interruption en attente peut le
+     * réveiller.
+     *
+     * @param cycle
+     *            le cycle actuel
+     * @return le prochain cycle actif du processeur
+     */
+    @Override
+    public long nextEventCycle(long cycle) {
+        if (!isOn()) {
+            return isInterruptPending() ? cycle : Long.MAX_VALUE;
+        }
+
+        return nextNonIdleCycle;
+    }
+
+    /**
+     * Cette méthode saute d'un coup les itérations d'une boucle d'attente active
+     * (par exemple LDH A,(LY); CP n; JR NZ) qui se terminent avant le cycle limite
+     * donné. Une boucle n'est reconnue que si sa dernière itération n'a rien écrit,
+     * n'a lu que la ROM et les registres LY, STAT, IF ou P1, et a ramené tous les
+     * registres à leur valeur précédente: tant qu'aucun autre composant ne change
+     * ces registres, chaque itération est alors identique à la précédente, et les
+     * sauter produit exactement le même état que de les exécuter.
+     *
+     * @param lastExternalEventCycle
+     *            le dernier cycle lors duquel un autre composant (ou une entrée) a
+     *            pu changer l'un des registres scrutés
+     * @param limit
+     *            le prochain cycle lors duquel un autre composant peut les changer
+     */
+    public void skipIdleLoop(long lastExternalEventCycle, long limit) {
+        boolean atLoopHead = PC == idleLoopHead && nextNonIdleCycle == idleLoopHeadCycle;
+        // La dernière itération doit avoir lu des valeurs qui n'ont pas changé depuis
+        if (idleLoopPeriod == 0 || !atLoopHead || (IME && isInterruptPending())
+                || lastExternalEventCycle > idleLoopHeadCycle - idleLoopPeriod) {
+            return;
+        }
+
+        long iterations = (limit - nextNonIdleCycle) / idleLoopPeriod;
+        if (iterations > 0) {
+            nextNonIdleCycle += iterations * idleLoopPeriod;
+            idleLoopHeadCycle = nextNonIdleCycle;
+        }
+    }
+
+    /**
+     * Cette méthode est appelée après chaque saut court vers l'arrière: elle
+     * reconnaît une boucle d'attente lorsque l'itération qui vient de se terminer
+     * n'a eu aucun effet.
+     *
+     * @param head
+     *            l'adresse de destination du saut, la tête de la boucle
+     */
+    private void onLoopHead(int head) {
+        materializeFlags();
+        long registers = (long) reg16(Reg16.AF) << 48 | (long) reg16(Reg16.BC) << 32 | (long) reg16(Reg16.DE) << 16
+                | reg16(Reg16.HL);
+        boolean sameState = head == idleLoopHead && idleLoopClean && registers == idleLoopRegisters
+                && SP == idleLoopSP && IME == idleLoopIME;
+
+        idleLoopPeriod = sameState ? nextNonIdleCycle - idleLoopHeadCycle : 0;
+        idleLoopHead = head;
+        idleLoopHeadCycle = nextNonIdleCycle;
+        idleLoopRegisters = registers;
+        idleLoopSP = SP;
+        idleLoopIME = IME;
+        idleLoopClean = true;
+    }
+
     /**
      * Cette méthode entreprend un cycle de travail du processeur, qui peut donc
      * traiter une interruption ou initier une instruction si il n'y a pas
-     * d'interruptions à traiter, i.e. appeler la méthode {@link #dispatch(Opcode)}
+     * d'interruptions à traiter, i.e. appeler la méthode {@link #dispatch(DecodedOpcode)}
      * avec l'opcode indiqué par le PC (program counter)
      *
      */
     private void reallyCycle(boolean interruptPending) {
         if (IME && interruptPending) {
             handleInterrupt();
+        } else if (PC < AddressMap.ROM_BANK_01_END && romBanks != null) {
+            CachedInstruction[] cache = PC < AddressMap.ROM_BANK_01_START ? lowCache : highCache;
+            int index = PC & (AddressMap.ROM_BANK_00_SIZE - 1);
+            CachedInstruction instruction = cache[index];
+            // L'instruction n'est décodée que lors de sa première exécution dans cette
+            // banque
+            if (instruction == null) {
+                DecodedOpcode opcode = fetchOpcode();
+                instruction = new CachedInstruction(opcode, fetchImmediate(opcode));
+                // Une instruction débordant sur la banque suivante dépend de deux
+                // banques, elle n'est pas conservée
+                if (index + opcode.totalBytes <= AddressMap.ROM_BANK_00_SIZE) {
+                    cache[index] = instruction;
+                }
+            }
+            immediate = instruction.immediate;
+            dispatch(instruction.opcode);
         } else {
-            int nextInstruction = bus.read(PC);
-            Opcode nextOpcode = nextInstruction == OPCODE_PREFIX ? PREFIXED_OPCODE_TABLE[read8AfterOpcode()]
-                    : DIRECT_OPCODE_TABLE[nextInstruction];
-            dispatch(nextOpcode);
+            DecodedOpcode opcode = fetchOpcode();
+            immediate = fetchImmediate(opcode);
+            dispatch(opcode);
+        }
+    }
+
+    /**
+     * Cette méthode lit et décode l'opcode se trouvant à l'adresse du PC.
+     *
+     * @return l'opcode décodé
+     */
+    private DecodedOpcode fetchOpcode() {
+        int nextInstruction = read8(PC);
+        return nextInstruction == OPCODE_PREFIX ? PREFIXED_DECODED_TABLE[read8(PC + 1)]
+                : DIRECT_DECODED_TABLE[nextInstruction];
+    }
+
+    /**
+     * Cette méthode lit l'opérande immédiate suivant l'opcode donné, se trouvant
+     * à l'adresse du PC.
+     *
+     * @param opcode
+     *            l'opcode décodé
+     * @return l'opérande immédiate, ou 0 si l'opcode n'en a pas
+     */
+    private int fetchImmediate(DecodedOpcode opcode) {
+        switch (opcode.immediateBytes) {
+        case 1:
+            return read8(PC + 1);
+        case 2:
+            return read16(PC + 1);
+        default:
+            return 0;
         }
     }
 
     /**
-     * Cette méthode effectue une instruction codée par l'opcode qui lui est fourni.
+     * Cette méthode effectue une instruction codée par l'opcode (décodé) qui lui est
+     * fourni.
      *
      * @param opcode
-     *            L'opcode qui indique l'instruction à effectuer
+     *            L'opcode décodé qui indique l'instruction à effectuer
      */
-    private void dispatch(Opcode opcode) {
+    private void dispatch(DecodedOpcode opcode) {
         int nextPC = PC + opcode.totalBytes;
         boolean instructionDone = false;
+        boolean jumped = false;
 
         switch (opcode.family) {
         case NOP:
             break;
         case LD_R8_HLR: {
-            registers8.set(extractReg(opcode, 3), read8AtHl());
+            registers8.set(opcode.reg3, read8AtHl());
         }
             break;
         case LD_A_HLRU: {
             registers8.set(Reg.A, read8AtHl());
-            setReg16(Reg16.HL, reg16(Reg16.HL) + extractHlIncrement(opcode));
+            setReg16(Reg16.HL, reg16(Reg16.HL) + opcode.hlIncrement);
         }
             break;
         case LD_A_N8R: {
@@ -185,24 +442,24 @@ public final class Cpu implements Component, Clocked {
         }
             break;
         case LD_R8_N8: {
-            registers8.set(extractReg(opcode, 3), read8AfterOpcode());
+            registers8.set(opcode.reg3, read8AfterOpcode());
         }
             break;
         case LD_R16SP_N16: {
-            setReg16SP(extractReg16(opcode), read16AfterOpcode());
+            setReg16SP(opcode.reg16, read16AfterOpcode());
         }
             break;
         case POP_R16: {
-            setReg16(extractReg16(opcode), pop16());
+            setReg16(opcode.reg16, pop16());
         }
             break;
         case LD_HLR_R8: {
-            write8AtHl(registers8.get(extractReg(opcode, 0)));
+            write8AtHl(registers8.get(opcode.reg0));
         }
             break;
         case LD_HLRU_A: {
             write8AtHl(registers8.get(Reg.A));
-            setReg16(Reg16.HL, reg16(Reg16.HL) + extractHlIncrement(opcode));
+            setReg16(Reg16.HL, reg16(Reg16.HL) + opcode.hlIncrement);
         }
             break;
         case LD_N8R_A: {
@@ -234,7 +491,7 @@ public final class Cpu implements Component, Clocked {
         }
             break;
         case LD_R8_R8: {
-            registers8.set(extractReg(opcode, 3), registers8.get(extractReg(opcode, 0)));
+            registers8.set(opcode.reg3, registers8.get(opcode.reg0));
         }
             break;
         case LD_SP_HL: {
@@ -242,47 +499,40 @@ public final class Cpu implements Component, Clocked {
         }
             break;
         case PUSH_R16: {
-            push16(reg16(extractReg16(opcode)));
+            push16(reg16(opcode.reg16));
         }
             break;
 
         // Add
         case ADD_A_R8: {
-            int sum = Alu.add(registers8.get(Reg.A), registers8.get(extractReg(opcode, 0)), getInitialCarry(opcode));
-            setRegFlags(Reg.A, sum);
+            registers8.set(Reg.A, lazyAdd(registers8.get(Reg.A), registers8.get(opcode.reg0), getInitialCarry(opcode)));
         }
             break;
         case ADD_A_N8: {
-            int sum = Alu.add(registers8.get(Reg.A), read8AfterOpcode(), getInitialCarry(opcode));
-            setRegFlags(Reg.A, sum);
+            registers8.set(Reg.A, lazyAdd(registers8.get(Reg.A), read8AfterOpcode(), getInitialCarry(opcode)));
         }
             break;
         case ADD_A_HLR: {
-            int sum = Alu.add(registers8.get(Reg.A), read8AtHl(), getInitialCarry(opcode));
-            setRegFlags(Reg.A, sum);
+            registers8.set(Reg.A, lazyAdd(registers8.get(Reg.A), read8AtHl(), getInitialCarry(opcode)));
         }
             break;
         case INC_R8: {
-            Reg r = extractReg(opcode, 3);
-            int sum = Alu.add(registers8.get(r), 1);
-            setRegFromAlu(r, sum);
-            combineAluFlags(sum, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.CPU);
+            Reg r = opcode.reg3;
+            registers8.set(r, lazyIncDec(FlagOp.INC, registers8.get(r)));
         }
             break;
         case INC_HLR: {
-            int sum = Alu.add(read8AtHl(), 1);
-            write8AtHl(Alu.unpackValue(sum));
-            combineAluFlags(sum, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU, FlagSrc.CPU);
+            write8AtHl(lazyIncDec(FlagOp.INC, read8AtHl()));
         }
             break;
         case INC_R16SP: {
-            Reg16 r = extractReg16(opcode);
+            Reg16 r = opcode.reg16;
             int regValue = r == Reg16.AF ? SP : reg16(r);
             setReg16SP(r, Bits.clip(16, regValue + 1));
         }
             break;
         case ADD_HL_R16SP: {
-            Reg16 r = extractReg16(opcode);
+            Reg16 r = opcode.reg16;
             int regValue = r == Reg16.AF ? SP : reg16(r);
             int sum = Alu.add16H(reg16(Reg16.HL), regValue);
             setReg16SP(Reg16.HL, Alu.unpackValue(sum));
@@ -291,7 +541,7 @@ public final class Cpu implements Component, Clocked {
             break;
         case LD_HLSP_S8: {
             int sum = Alu.add16L(SP, Bits.clip(16, Bits.signExtend8(read8AfterOpcode())));
-            if (Bits.test(opcode.encoding, 4)) {
+            if (opcode.targetsHl) {
                 setReg16(Reg16.HL, Alu.unpackValue(sum));
             } else {
                 SP = Alu.unpackValue(sum);
@@ -302,50 +552,40 @@ public final class Cpu implements Component, Clocked {
 
         // Subtract
         case SUB_A_R8: {
-            int sub = Alu.sub(registers8.get(Reg.A), registers8.get(extractReg(opcode, 0)), getInitialCarry(opcode));
-            setRegFlags(Reg.A, sub);
+            registers8.set(Reg.A, lazySub(registers8.get(Reg.A), registers8.get(opcode.reg0), getInitialCarry(opcode)));
         }
             break;
         case SUB_A_N8: {
-            int sub = Alu.sub(registers8.get(Reg.A), read8AfterOpcode(), getInitialCarry(opcode));
-            setRegFlags(Reg.A, sub);
+            registers8.set(Reg.A, lazySub(registers8.get(Reg.A), read8AfterOpcode(), getInitialCarry(opcode)));
         }
             break;
         case SUB_A_HLR: {
-            int sub = Alu.sub(registers8.get(Reg.A), read8AtHl(), getInitialCarry(opcode));
-            setRegFlags(Reg.A, sub);
+            registers8.set(Reg.A, lazySub(registers8.get(Reg.A), read8AtHl(), getInitialCarry(opcode)));
         }
             break;
         case DEC_R8: {
-            Reg r = extractReg(opcode, 3);
-            int sub = Alu.sub(registers8.get(r), 1);
-            setRegFromAlu(r, sub);
-            combineAluFlags(sub, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU, FlagSrc.CPU);
+            Reg r = opcode.reg3;
+            registers8.set(r, lazyIncDec(FlagOp.DEC, registers8.get(r)));
         }
             break;
         case DEC_HLR: {
-            int sub = Alu.sub(read8AtHl(), 1);
-            write8AtHl(Alu.unpackValue(sub));
-            combineAluFlags(sub, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU, FlagSrc.CPU);
+            write8AtHl(lazyIncDec(FlagOp.DEC, read8AtHl()));
         }
             break;
         case CP_A_R8: {
-            int sub = Alu.sub(registers8.get(Reg.A), registers8.get(extractReg(opcode, 0)));
-            setFlags(sub);
+            lazySub(registers8.get(Reg.A), registers8.get(opcode.reg0), false);
         }
             break;
         case CP_A_N8: {
-            int sub = Alu.sub(registers8.get(Reg.A), read8AfterOpcode());
-            setFlags(sub);
+            lazySub(registers8.get(Reg.A), read8AfterOpcode(), false);
         }
             break;
         case CP_A_HLR: {
-            int sub = Alu.sub(registers8.get(Reg.A), read8AtHl());
-            setFlags(sub);
+            lazySub(registers8.get(Reg.A), read8AtHl(), false);
         }
             break;
         case DEC_R16SP: {
-            Reg16 r = extractReg16(opcode);
+            Reg16 r = opcode.reg16;
             int regValue = r == Reg16.AF ? SP : reg16(r);
             setReg16SP(r, Bits.clip(16, regValue - 1));
         }
@@ -353,39 +593,39 @@ public final class Cpu implements Component, Clocked {
 
         // And, or, xor, complement
         case AND_A_N8: {
-            setRegFlags(Reg.A, Alu.and(registers8.get(Reg.A), read8AfterOpcode()));
+            registers8.set(Reg.A, lazyLogic(FlagOp.AND, registers8.get(Reg.A) & read8AfterOpcode()));
         }
             break;
         case AND_A_R8: {
-            setRegFlags(Reg.A, Alu.and(registers8.get(Reg.A), registers8.get(extractReg(opcode, 0))));
+            registers8.set(Reg.A, lazyLogic(FlagOp.AND, registers8.get(Reg.A) & registers8.get(opcode.reg0)));
         }
             break;
         case AND_A_HLR: {
-            setRegFlags(Reg.A, Alu.and(registers8.get(Reg.A), read8AtHl()));
+            registers8.set(Reg.A, lazyLogic(FlagOp.AND, registers8.get(Reg.A) & read8AtHl()));
         }
             break;
         case OR_A_R8: {
-            setRegFlags(Reg.A, Alu.or(registers8.get(Reg.A), registers8.get(extractReg(opcode, 0))));
+            registers8.set(Reg.A, lazyLogic(FlagOp.OR, registers8.get(Reg.A) | registers8.get(opcode.reg0)));
         }
             break;
         case OR_A_N8: {
-            setRegFlags(Reg.A, Alu.or(registers8.get(Reg.A), read8AfterOpcode()));
+            registers8.set(Reg.A, lazyLogic(FlagOp.OR, registers8.get(Reg.A) | read8AfterOpcode()));
         }
             break;
         case OR_A_HLR: {
-            setRegFlags(Reg.A, Alu.or(registers8.get(Reg.A), read8AtHl()));
+            registers8.set(Reg.A, lazyLogic(FlagOp.OR, registers8.get(Reg.A) | read8AtHl()));
         }
             break;
         case XOR_A_R8: {
-            setRegFlags(Reg.A, Alu.xor(registers8.get(Reg.A), registers8.get(extractReg(opcode, 0))));
+            registers8.set(Reg.A, lazyLogic(FlagOp.XOR, registers8.get(Reg.A) ^ registers8.get(opcode.reg0)));
         }
             break;
         case XOR_A_N8: {
-            setRegFlags(Reg.A, Alu.xor(registers8.get(Reg.A), read8AfterOpcode()));
+            registers8.set(Reg.A, lazyLogic(FlagOp.XOR, registers8.get(Reg.A) ^ read8AfterOpcode()));
         }
             break;
         case XOR_A_HLR: {
-            setRegFlags(Reg.A, Alu.xor(registers8.get(Reg.A), read8AtHl()));
+            registers8.set(Reg.A, lazyLogic(FlagOp.XOR, registers8.get(Reg.A) ^ read8AtHl()));
         }
             break;
         case CPL: {
@@ -397,41 +637,41 @@ public final class Cpu implements Component, Clocked {
 
         // Rotate, shift
         case ROTCA: {
-            int rot = Alu.rotate(extractRotDir(opcode), registers8.get(Reg.A));
+            int rot = Alu.rotate(opcode.rotDir, registers8.get(Reg.A));
             setRegFromAlu(Reg.A, rot);
             combineAluFlags(rot, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
         }
             break;
         case ROTA: {
-            int rot = Alu.rotate(extractRotDir(opcode), registers8.get(Reg.A), registers8.testBit(Reg.F, Flag.C));
+            int rot = Alu.rotate(opcode.rotDir, registers8.get(Reg.A), flagC());
             setRegFromAlu(Reg.A, rot);
             combineAluFlags(rot, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
         }
             break;
         case ROTC_R8: {
-            Reg r = extractReg(opcode, 0);
-            int rot = Alu.rotate(extractRotDir(opcode), registers8.get(r));
+            Reg r = opcode.reg0;
+            int rot = Alu.rotate(opcode.rotDir, registers8.get(r));
             setRegFlags(r, rot);
         }
             break;
         case ROT_R8: {
-            Reg r = extractReg(opcode, 0);
-            int rot = Alu.rotate(extractRotDir(opcode), registers8.get(r), registers8.testBit(Reg.F, Flag.C));
+            Reg r = opcode.reg0;
+            int rot = Alu.rotate(opcode.rotDir, registers8.get(r), flagC());
             setRegFlags(r, rot);
         }
             break;
         case ROTC_HLR: {
-            int rot = Alu.rotate(extractRotDir(opcode), read8AtHl());
+            int rot = Alu.rotate(opcode.rotDir, read8AtHl());
             write8AtHlAndSetFlags(rot);
         }
             break;
         case ROT_HLR: {
-            int rot = Alu.rotate(extractRotDir(opcode), read8AtHl(), registers8.testBit(Reg.F, Flag.C));
+            int rot = Alu.rotate(opcode.rotDir, read8AtHl(), flagC());
             write8AtHlAndSetFlags(rot);
         }
             break;
         case SWAP_R8: {
-            Reg r = extractReg(opcode, 0);
+            Reg r = opcode.reg0;
             int swap = Alu.swap(registers8.get(r));
             setRegFlags(r, swap);
         }
@@ -442,19 +682,19 @@ public final class Cpu implements Component, Clocked {
         }
             break;
         case SLA_R8: {
-            Reg r = extractReg(opcode, 0);
+            Reg r = opcode.reg0;
             int shiftL = Alu.shiftLeft(registers8.get(r));
             setRegFlags(r, shiftL);
         }
             break;
         case SRA_R8: {
-            Reg r = extractReg(opcode, 0);
+            Reg r = opcode.reg0;
             int shiftR = Alu.shiftRightA(registers8.get(r));
             setRegFlags(r, shiftR);
         }
             break;
         case SRL_R8: {
-            Reg r = extractReg(opcode, 0);
+            Reg r = opcode.reg0;
             int shiftR = Alu.shiftRightL(registers8.get(r));
             setRegFlags(r, shiftR);
         }
@@ -477,34 +717,35 @@ public final class Cpu implements Component, Clocked {
 
         // Bit test and set
         case BIT_U3_R8: {
-            int test = Alu.testBit(registers8.get(extractReg(opcode, 0)), extractBitIndex(opcode));
+            int test = Alu.testBit(registers8.get(opcode.reg0), opcode.bitIndex);
             combineAluFlags(test, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1, FlagSrc.CPU);
         }
             break;
         case BIT_U3_HLR:
-            int test = Alu.testBit(read8AtHl(), extractBitIndex(opcode));
+            int test = Alu.testBit(read8AtHl(), opcode.bitIndex);
             combineAluFlags(test, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1, FlagSrc.CPU);
             break;
         case CHG_U3_R8: {
-            Reg r = extractReg(opcode, 0);
-            if (!extractSetValue(opcode)) {
-                registers8.set(r, registers8.get(r) & Bits.complement8(Bits.mask(extractBitIndex(opcode))));
+            Reg r = opcode.reg0;
+            if (!opcode.setValue) {
+                registers8.set(r, registers8.get(r) & Bits.complement8(opcode.bitMask));
             } else {
-                registers8.set(r, registers8.get(r) | Bits.mask(extractBitIndex(opcode)));
+                registers8.set(r, registers8.get(r) | opcode.bitMask);
             }
         }
             break;
         case CHG_U3_HLR: {
-            if (!extractSetValue(opcode)) {
-                write8AtHl(read8AtHl() & Bits.complement8(Bits.mask(extractBitIndex(opcode))));
+            if (!opcode.setValue) {
+                write8AtHl(read8AtHl() & Bits.complement8(opcode.bitMask));
             } else {
-                write8AtHl(read8AtHl() | Bits.mask(extractBitIndex(opcode)));
+                write8AtHl(read8AtHl() | opcode.bitMask);
             }
         }
             break;
 
         // Misc. ALU
         case DAA:
+            materializeFlags();
             int adjust = Alu.bcdAdjust(registers8.get(Reg.A), registers8.testBit(Reg.F, Flag.N),
                     registers8.testBit(Reg.F, Flag.H), registers8.testBit(Reg.F, Flag.C));
             setRegFromAlu(Reg.A, adjust);
@@ -521,23 +762,27 @@ public final class Cpu implements Component, Clocked {
             break;
         case JP_N16: {
             nextPC = read16AfterOpcode();
+            jumped = true;
         }
             break;
         case JP_CC_N16: {
             if (testCondition(opcode)) {
                 nextPC = read16AfterOpcode();
                 instructionDone = true;
+                jumped = true;
             }
         }
             break;
         case JR_E8: {
             nextPC += Bits.signExtend8(read8AfterOpcode());
+            jumped = true;
         }
             break;
         case JR_CC_E8: {
             if (testCondition(opcode)) {
                 nextPC += Bits.signExtend8(read8AfterOpcode());
                 instructionDone = true;
+                jumped = true;
             }
         }
             break;
@@ -558,7 +803,7 @@ public final class Cpu implements Component, Clocked {
             break;
         case RST_U3: {
             push16(nextPC);
-            nextPC = AddressMap.RESETS[Bits.extract(opcode.encoding, 3, 3)];
+            nextPC = opcode.resetAddress;
         }
             break;
         case RET: {
@@ -575,7 +820,7 @@ public final class Cpu implements Component, Clocked {
 
         // Interrupts
         case EDI: {
-            IME = Bits.test(opcode.encoding, 3);
+            IME = opcode.enablesInterrupts;
         }
             break;
         case RETI: {
@@ -595,8 +840,13 @@ public final class Cpu implements Component, Clocked {
             break;
         }
 
+        boolean loopsBack = jumped && nextPC <= PC && PC - nextPC <= MAX_IDLE_LOOP_BYTES;
         PC = nextPC;
         nextNonIdleCycle += opcode.cycles + (instructionDone ? opcode.additionalCycles : 0);
+
+        if (loopsBack) {
+            onLoopHead(nextPC);
+        }
     }
 
     private boolean isOn() {
@@ -627,16 +877,23 @@ public final class Cpu implements Component, Clocked {
     }
 
     private int read8(int address) {
+        if (address >= AddressMap.ROM_BANK_01_END && !isPolledRegister(address)) {
+            idleLoopClean = false;
+        }
         return bus.read(address);
     }
 
+    private static boolean isPolledRegister(int address) {
+        return address == AddressMap.REG_LY || address == AddressMap.REG_LCD_STAT || address == AddressMap.REG_IF
+                || address == AddressMap.REG_P1;
+    }
+
     private int read8AtHl() {
         return read8(reg16(Reg16.HL));
     }
 
     private int read8AfterOpcode() {
-        assert PC < 0xFFFF : "Valeur invalide pour PC superieure a 16 bits";
-        return read8(PC + 1);
+        return immediate;
     }
 
     private int read16(int address) {
@@ -645,10 +902,11 @@ public final class Cpu implements Component, Clocked {
     }
 
     private int read16AfterOpcode() {
-        return read16(PC + 1);
+        return immediate;
     }
 
     private void write8(int address, int v) {
+        idleLoopClean = false;
         bus.write(address, v);
     }
 
@@ -673,12 +931,16 @@ public final class Cpu implements Component, Clocked {
     }
 
     private int reg16(Reg16 r) {
+        if (r == Reg16.AF) {
+            materializeFlags();
+        }
         return Bits.make16(registers8.get(r.a), registers8.get(r.b));
     }
 
     private void setReg16(Reg16 r, int newV) {
         if (r == Reg16.AF) {
             newV &= 0b11111111_11111111_11111111_11110000;
+            flagOp = FlagOp.NONE;
         }
         registers8.set(r.b, Bits.clip(8, newV));
         registers8.set(r.a, Bits.extract(newV, 8, 8));
@@ -692,58 +954,13 @@ public final class Cpu implements Component, Clocked {
         }
     }
 
-    private Reg extractReg(Opcode opcode, int startBit) {
-        switch (Bits.extract(opcode.encoding, startBit, 3)) {
-        case 0:
-            return Reg.B;
-        case 1:
-            return Reg.C;
-        case 2:
-            return Reg.D;
-        case 3:
-            return Reg.E;
-        case 4:
-            return Reg.H;
-        case 5:
-            return Reg.L;
-        case 6:
-            throw new NullPointerException();
-        case 7:
-            return Reg.A;
-        default:
-            break;
-        }
-
-        return null;
-    }
-
-    private Reg16 extractReg16(Opcode opcode) {
-        switch (Bits.extract(opcode.encoding, 4, 2)) {
-        case 0:
-            return Reg16.BC;
-        case 1:
-            return Reg16.DE;
-        case 2:
-            return Reg16.HL;
-        case 3:
-            return Reg16.AF;
-        default:
-            break;
-        }
-
-        return null;
-    }
-
-    private int extractHlIncrement(Opcode opcode) {
-        return Bits.test(opcode.encoding, 4) ? -1 : 1;
-    }
-
     private void setRegFromAlu(Reg r, int vf) {
         registers8.set(r, Alu.unpackValue(vf));
     }
 
     private void setFlags(int valueFlags) {
         registers8.set(Reg.F, Alu.unpackFlags(valueFlags));
+        flagOp = FlagOp.NONE;
     }
 
     private void setRegFlags(Reg r, int vf) {
@@ -757,60 +974,112 @@ public final class Cpu implements Component, Clocked {
     }
 
     private void combineAluFlags(int vf, FlagSrc z, FlagSrc n, FlagSrc h, FlagSrc c) {
-        FlagSrc[] tableFlag = { c, h, n, z };
-        for (int i = 0; i < tableFlag.length; i++) {
-            switch (tableFlag[i]) {
-            case V0:
-                registers8.setBit(Reg.F, Flag.values()[4 + i], false);
-                break;
-            case V1:
-                registers8.setBit(Reg.F, Flag.values()[4 + i], true);
-                break;
-            case ALU:
-                registers8.setBit(Reg.F, Flag.values()[4 + i], Bits.test(Alu.unpackFlags(vf), Flag.values()[4 + i]));
-                break;
-            case CPU:
-                registers8.setBit(Reg.F, Flag.values()[4 + i], Bits.test(registers8.get(Reg.F), Flag.values()[4 + i]));
-                break;
-            default:
-                break;
-            }
+        materializeFlags();
+        int aluFlags = Alu.unpackFlags(vf);
+        int cpuFlags = registers8.get(Reg.F);
+        registers8.set(Reg.F, combineFlag(z, Flag.Z, aluFlags, cpuFlags) | combineFlag(n, Flag.N, aluFlags, cpuFlags)
+                | combineFlag(h, Flag.H, aluFlags, cpuFlags) | combineFlag(c, Flag.C, aluFlags, cpuFlags));
+    }
+
+    private static int combineFlag(FlagSrc src, Flag flag, int aluFlags, int cpuFlags) {
+        switch (src) {
+        case V1:
+            return flag.mask();
+        case ALU:
+            return aluFlags & flag.mask();
+        case CPU:
+            return cpuFlags & flag.mask();
+        default:
+            return 0;
         }
+    }
 
-        registers8.set(Reg.F, registers8.get(Reg.F) & 0b1111_0000);
+    private int lazyAdd(int l, int r, boolean carry) {
+        setLazyFlags(FlagOp.ADD, l, r, carry);
+        return flagResult = Bits.clip(8, l + r + (carry ? 1 : 0));
     }
 
-    private RotDir extractRotDir(Opcode opcode) {
-        return Bits.test(opcode.encoding, 3) ? RotDir.RIGHT : RotDir.LEFT;
+    private int lazySub(int l, int r, boolean borrow) {
+        setLazyFlags(FlagOp.SUB, l, r, borrow);
+        return flagResult = Bits.clip(8, l - r - (borrow ? 1 : 0));
     }
 
-    private int extractBitIndex(Opcode opcode) {
-        return Bits.extract(opcode.encoding, 3, 3);
+    private int lazyIncDec(FlagOp op, int v) {
+        // INC et DEC ne modifient pas le fanion C, qui doit donc être capturé avant
+        flagPreservedC = flagC();
+        setLazyFlags(op, v, 1, false);
+        return flagResult = Bits.clip(8, op == FlagOp.INC ? v + 1 : v - 1);
     }
 
-    private boolean extractSetValue(Opcode opcode) {
-        return Bits.test(opcode.encoding, 6);
+    private int lazyLogic(FlagOp op, int result) {
+        setLazyFlags(op, 0, 0, false);
+        return flagResult = result;
     }
 
-    private boolean getInitialCarry(Opcode opcode) {
-        return Bits.test(opcode.encoding, 3) & registers8.testBit(Reg.F, Flag.C);
+    private void setLazyFlags(FlagOp op, int l, int r, boolean carry) {
+        flagOp = op;
+        flagL = l;
+        flagR = r;
+        flagCarryIn = carry;
     }
 
-    private boolean testCondition(Opcode opcode) {
-        switch (Bits.extract(opcode.encoding, 3, 2)) {
-        case 0:
-            return !registers8.testBit(Reg.F, Flag.Z);
-        case 1:
-            return registers8.testBit(Reg.F, Flag.Z);
-        case 2:
-            return !registers8.testBit(Reg.F, Flag.C);
-        case 3:
+    private boolean flagZ() {
+        return flagOp == FlagOp.NONE ? registers8.testBit(Reg.F, Flag.Z) : flagResult == 0;
+    }
+
+    private boolean flagC() {
+        int cin = flagCarryIn ? 1 : 0;
+        switch (flagOp) {
+        case NONE:
             return registers8.testBit(Reg.F, Flag.C);
+        case ADD:
+            return flagL + flagR + cin > 0xFF;
+        case SUB:
+            return flagL < flagR + cin;
+        case INC:
+        case DEC:
+            return flagPreservedC;
         default:
             return false;
         }
     }
 
+    private boolean flagH() {
+        int cin = flagCarryIn ? 1 : 0;
+        switch (flagOp) {
+        case ADD:
+        case INC:
+            return (flagL & 0xF) + (flagR & 0xF) + cin > 0xF;
+        case SUB:
+        case DEC:
+            return (flagL & 0xF) < (flagR & 0xF) + cin;
+        case AND:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Calcule les fanions de la dernière opération paresseuse et les écrit dans le
+     * registre F, qui redevient alors la seule source des fanions.
+     */
+    private void materializeFlags() {
+        if (flagOp != FlagOp.NONE) {
+            boolean n = flagOp == FlagOp.SUB || flagOp == FlagOp.DEC;
+            registers8.set(Reg.F, Alu.maskZNHC(flagZ(), n, flagH(), flagC()));
+            flagOp = FlagOp.NONE;
+        }
+    }
+
+    private boolean getInitialCarry(DecodedOpcode opcode) {
+        return opcode.usesCarry && flagC();
+    }
+
+    private boolean testCondition(DecodedOpcode opcode) {
+        return (opcode.conditionOnZ ? flagZ() : flagC()) == opcode.conditionValue;
+    }
+
     /**
      * Cette méthode permet d'accéder aux registres IE et IF sur le bus, ainsi qu'au
      * RAM du processeur (high RAM).
@@ -838,7 +1107,8 @@ public final class Cpu implements Component, Clocked {
 
     /**
      * Cette méthode permet d'écrire sur le bus dans les registres IE et IF, ainsi
-     * que dans le RAM du processeur.
+     * que dans le RAM du processeur. Les écritures pouvant changer le contenu
+     * visible de la ROM invalident le cache des instructions.
      *
      * @param address
      *            L'adresse à laquelle l'écriture doit être effectuée
@@ -860,15 +1130,162 @@ public final class Cpu implements Component, Clocked {
             IF = data;
         } else if (address >= AddressMap.HRAM_START && address < AddressMap.HRAM_END) {
             highRam.write(address - AddressMap.HRAM_START, data);
+        } else if (address < AddressMap.ROM_BANK_01_END || address == AddressMap.REG_BOOT_ROM_DISABLE) {
+            // Une écriture dans la ROM (registres du MBC) ou la désactivation de la
+            // mémoire de démarrage peut changer les banques projetées; elle est
+            // observée après avoir été traitée par la cartouche, attachée avant le
+            // processeur
+            mapRomBanks();
+        }
+    }
+
+    /**
+     * Donne au processeur le moyen de connaître la banque de ROM projetée à une
+     * adresse de la ROM, ce qui lui permet de conserver les instructions décodées
+     * de chaque banque. Sans cela, les instructions de la ROM sont décodées à
+     * chaque exécution.
+     *
+     * Le contenu d'une banque ne devant jamais changer, les projections de la ROM
+     * avec et sans mémoire de démarrage sont des banques différentes.
+     *
+     * @param romBanks
+     *            la fonction donnant la banque (de 0 à bankCount exclu) projetée à
+     *            une adresse de la ROM
+     * @param bankCount
+     *            le nombre de banques
+     * @throws NullPointerException
+     *             si la fonction est nulle
+     * @throws IllegalArgumentException
+     *             si le nombre de banques n'est pas strictement positif
+     */
+    public void setRomBanks(IntUnaryOperator romBanks, int bankCount) {
+        Preconditions.checkArgument(bankCount > 0);
+        this.romBanks = Objects.requireNonNull(romBanks);
+        bankCaches = new CachedInstruction[bankCount][];
+        mapRomBanks();
+    }
+
+    private void mapRomBanks() {
+        if (romBanks != null) {
+            lowCache = bankCache(romBanks.applyAsInt(AddressMap.ROM_BANK_00_START));
+            highCache = bankCache(romBanks.applyAsInt(AddressMap.ROM_BANK_01_START));
         }
     }
 
+    private CachedInstruction[] bankCache(int bank) {
+        if (bankCaches[bank] == null) {
+            bankCaches[bank] = new CachedInstruction[AddressMap.ROM_BANK_00_SIZE];
+        }
+        return bankCaches[bank];
+    }
+
+    /**
+     * Le processeur est attaché aux pages de ses registres et de sa mémoire, ainsi
+     * qu'à celles de la ROM afin d'observer les écritures qui invalident le cache
+     * des instructions (il ne répond jamais aux lectures de la ROM).
+     *
+     * @param page
+     *            l'index de la page
+     * @return vrai si le processeur doit recevoir les accès à cette page
+     */
+    @Override
+    public boolean isMappedToPage(int page) {
+        return Component.pageIntersects(page, AddressMap.REG_IF, AddressMap.REG_IE + 1)
+                || Component.pageIntersects(page, AddressMap.ROM_BANK_00_START, AddressMap.ROM_BANK_01_END);
+    }
+
+    /**
+     * Copie l'état du processeur donné: registres, mémoire haute, interruptions,
+     * fanions pas encore calculés, cache des instructions et boucle d'attente
+     * détectée. Le bus n'est pas copié.
+     *
+     * @param other
+     *            le processeur dont l'état est copié
+     */
+    public void copyStateFrom(Cpu other) {
+        PC = other.PC;
+        SP = other.SP;
+        IME = other.IME;
+        IE = other.IE;
+        IF = other.IF;
+        registers8.copyFrom(other.registers8);
+        highRam.copyFrom(other.highRam);
+        nextNonIdleCycle = other.nextNonIdleCycle;
+        immediate = other.immediate;
+
+        // Chaque processeur a son propre cache, qui doit seulement suivre les banques
+        // projetées de sa propre cartouche
+        mapRomBanks();
+
+        flagOp = other.flagOp;
+        flagL = other.flagL;
+        flagR = other.flagR;
+        flagResult = other.flagResult;
+        flagCarryIn = other.flagCarryIn;
+        flagPreservedC = other.flagPreservedC;
+
+        idleLoopHead = other.idleLoopHead;
+        idleLoopHeadCycle = other.idleLoopHeadCycle;
+        idleLoopRegisters = other.idleLoopRegisters;
+        idleLoopClean = other.idleLoopClean;
+        idleLoopPeriod = other.idleLoopPeriod;
+        idleLoopSP = other.idleLoopSP;
+        idleLoopIME = other.idleLoopIME;
+    }
+
+    /**
+     * L'état du processeur est ses registres, PC et SP, IME, IE et IF, sa mémoire
+     * haute et son prochain cycle actif. Le cache des instructions et la boucle
+     * d'attente détectée ne sont pas sauvegardés, ils sont reconstruits après la
+     * restauration.
+     *
+     * @return la taille de l'état sauvegardé
+     */
+    @Override
+    public int stateSize() {
+        return registers8.registerFile.length + 2 * Short.BYTES + 3 + highRam.stateSize() + Long.BYTES;
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        materializeFlags();
+        buffer.put(registers8.registerFile);
+        buffer.putShort((short) PC);
+        buffer.putShort((short) SP);
+        buffer.put((byte) (IME ? 1 : 0));
+        buffer.put((byte) IE);
+        buffer.put((byte) IF);
+        highRam.saveState(buffer);
+        buffer.putLong(nextNonIdleCycle);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        buffer.get(registers8.registerFile);
+        registers8.set(Reg.F, registers8.get(Reg.F) & 0b1111_0000);
+        flagOp = FlagOp.NONE;
+        PC = Short.toUnsignedInt(buffer.getShort());
+        SP = Short.toUnsignedInt(buffer.getShort());
+        IME = buffer.get() != 0;
+        IE = Byte.toUnsignedInt(buffer.get());
+        IF = Byte.toUnsignedInt(buffer.get());
+        highRam.loadState(buffer);
+        nextNonIdleCycle = buffer.getLong();
+
+        // La projection de la ROM a pu changer, et la boucle d'attente doit être
+        // observée à nouveau avant d'être sautée
+        mapRomBanks();
+        idleLoopHead = NO_LOOP;
+        idleLoopPeriod = 0;
+    }
+
     /**
      * Méthode de déboguage, permet d'obtenir la valeur des registres.
      *
      * @return un tableau contenant les valeurs des registres
      */
     public int[] _testGetPcSpAFBCDEHL() {
+        materializeFlags();
         return new int[] { PC, SP, registers8.get(Reg.A), registers8.get(Reg.F), registers8.get(Reg.B),
                 registers8.get(Reg.C), registers8.get(Reg.D), registers8.get(Reg.E), registers8.get(Reg.H),
                 registers8.get(Reg.L) };
@@ -1,33 +1,53 @@
 package ch.epfl.gameboj.component.lcd;
 
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Snapshottable;
+import ch.epfl.gameboj.component.memory.OamRamController;
 
 /**
  * Cette classe modélise un contrôleur DMA (Direct Memory Access), composant à
  * part entière de la GameBoy, qui permet d'effectuer une copie rapide (un
  * octet/cycle) de la RAM vers la VRAM/OAM du contrôleur LCD.
  * 
+ * Les octets ne sont pas copiés un par un à chaque cycle, mais par blocs,
+ * directement dans l'OAM: chaque fois que le contrôleur LCD travaille (donc
+ * avant tout accès du processeur), tous les octets qui auraient dû être copiés
+ * jusque là le sont d'un coup.
+ * 
+ * Chaque contrôleur LCD possède son propre contrôleur DMA, afin que plusieurs
+ * GameBoy puissent fonctionner en même temps dans la même JVM.
+ * 
  * @author Christophe Saad (282557)
  * @author David Cian (287967)
  *
  */
-public final class DmaController {
+public final class DmaController implements Snapshottable {
 	private static final int COPY_LENGTH = 160;
-	/* DmaController est un singleton, car non seulement n'existe-t-il qu'un seul contrôleur
-	 * physiquement, mais il n'y a pas besoin d'instancier la classe plus qu'une fois
-	 */
-	private static final DmaController DMA_CONTROLLER = new DmaController();
+	private final OamRamController oamRamController;
 	private Bus bus;
 	private boolean isActive;
 	private int startAddress;
+	// Le cycle lors duquel la copie a été démarrée
+	private long startCycle;
 	private int currentIndex;
 
-	private DmaController() {
-		
+	/**
+	 * Construit un contrôleur DMA copiant dans l'OAM donnée.
+	 * 
+	 * @param oamRamController
+	 *            le contrôleur de l'OAM dans laquelle les copies sont faites
+	 * @throws NullPointerException
+	 *             si le contrôleur de l'OAM est nul
+	 */
+	DmaController(OamRamController oamRamController) {
+		this.oamRamController = Objects.requireNonNull(oamRamController);
 	}
-	
+
 	void setBus(Bus bus) {
 		this.bus = bus;
 	}
@@ -37,8 +57,11 @@ public final class DmaController {
 	 * 
 	 * @param addressMSB
 	 *            l'octet des MSB de l'adresse de début de la copie
+	 * @param cycle
+	 *            le cycle lors duquel la copie est démarrée, le premier octet étant
+	 *            copié lors du cycle suivant
 	 */
-	void start(int addressMSB) {
+	void start(int addressMSB, long cycle) {
 		// Si une copie n'est pas déjà en cours, débute la copie
 		if (!isActive) {
 			startAddress = Preconditions.checkBits8(addressMSB) << Byte.SIZE;
@@ -48,23 +71,39 @@ public final class DmaController {
 					"The start address can only be set in increments of 0x100");
 			if (bus == null)
 				throw new IllegalStateException("The bus has not been set");
+			startCycle = cycle;
 			isActive = true;
 		}
 	}
 
 	/**
-	 * Cette méthode copie un octet à la fois de la RAM vers la VRAM/OAM du
-	 * contrôleur LCD.
+	 * Cette méthode copie d'un coup, de la RAM vers l'OAM du contrôleur LCD, tous
+	 * les octets qui doivent l'avoir été au cycle donné (un par cycle depuis le
+	 * démarrage).
+	 * 
+	 * @param cycle
+	 *            le cycle actuel
 	 */
-	void copy() {
+	void copyUntil(long cycle) {
 		if (!isActive)
 			throw new IllegalStateException("Cannot copy when quick copy is inactive");
-		if (currentIndex < COPY_LENGTH) {
-			bus.write(AddressMap.OAM_START + currentIndex, bus.read(startAddress + currentIndex));
+		int dueBytes = (int) Math.min(COPY_LENGTH, cycle - startCycle);
+		while (isActive && currentIndex < dueBytes) {
+			oamRamController.write(AddressMap.OAM_START + currentIndex, bus.read(startAddress + currentIndex));
 			incrementIndex();
 		}
 	}
 
+	/**
+	 * Retourne le cycle lors duquel le dernier octet de la copie en cours est
+	 * copié.
+	 * 
+	 * @return le cycle de fin de la copie
+	 */
+	long endCycle() {
+		return startCycle + COPY_LENGTH;
+	}
+
 	/**
 	 * Cette méthode incrémente l'index de la copie, en terminant la copie si elle a
 	 * tout copié.
@@ -86,14 +125,47 @@ public final class DmaController {
 	}
 
 	/**
-	 * Ce getter permet de se conformer au pattern singleton.
+	 * Copie l'état de la copie en cours du contrôleur donné, le bus et l'OAM
+	 * n'étant pas copiés.
+	 * 
+	 * @param other
+	 *            le contrôleur dont l'état est copié
+	 */
+	void copyStateFrom(DmaController other) {
+		isActive = other.isActive;
+		startAddress = other.startAddress;
+		startCycle = other.startCycle;
+		currentIndex = other.currentIndex;
+	}
+
+	/**
+	 * L'état du contrôleur est celui de la copie en cours: son activité, l'octet
+	 * des MSB de son adresse de début, son cycle de début et son index.
 	 * 
-	 * @return le contrôleur DMA
+	 * @return la taille de l'état sauvegardé
 	 */
-	static DmaController getDmaController() {
-		return DMA_CONTROLLER;
+	@Override
+	public int stateSize() {
+		return 3 + Long.BYTES;
+	}
+
+	@Override
+	public void saveState(ByteBuffer buffer) {
+		buffer.put((byte) (isActive ? 1 : 0));
+		buffer.put((byte) (startAddress >>> Byte.SIZE));
+		buffer.putLong(startCycle);
+		buffer.put((byte) currentIndex);
 	}
-	
+
+	@Override
+	public void loadState(ByteBuffer buffer) {
+		isActive = buffer.get() != 0;
+		startAddress = Byte.toUnsignedInt(buffer.get()) << Byte.SIZE;
+		startCycle = buffer.getLong();
+		currentIndex = Byte.toUnsignedInt(buffer.get());
+		Preconditions.checkArgument(currentIndex < COPY_LENGTH);
+	}
+
 	boolean isActive() {
 		return isActive;
 	}
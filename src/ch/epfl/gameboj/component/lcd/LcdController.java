@@ -6,7 +6,9 @@ import static ch.epfl.gameboj.component.memory.OamRamController.SPRITES_PER_LINE
 import static ch.epfl.gameboj.component.memory.OamRamController.SPRITE_XOFFSET;
 import static ch.epfl.gameboj.component.memory.OamRamController.SPRITE_YOFFSET;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
@@ -20,6 +22,7 @@ import ch.epfl.gameboj.bits.BitVector;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Snapshottable;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
 import ch.epfl.gameboj.component.memory.OamRamController;
@@ -35,7 +38,17 @@ import ch.epfl.gameboj.component.memory.VideoRamController;
  * @author David Cian (287967)
  *
  */
-public final class LcdController implements Component, Clocked {
+public final class LcdController implements Component, Clocked, Snapshottable {
+
+	/**
+	 * Les moteurs de rendu disponibles: IMAGE_LINES compose chaque ligne au moyen
+	 * de LcdImageLine immuables, FRAME_BUFFER dessine directement les index de
+	 * couleur dans un tampon réutilisé, sans allocation, et produit les mêmes
+	 * pixels.
+	 */
+	public enum Renderer {
+		IMAGE_LINES, FRAME_BUFFER
+	}
 
 	private enum LCDReg implements Register {
 		LCDC, STAT, SCY, SCX, LY, LYC, DMA, BGP, OBP0, OBP1, WY, WX
@@ -63,6 +76,12 @@ public final class LcdController implements Component, Clocked {
 	private static final int MODE2_DURATION = 20, MODE3_DURATION = 43, MODE0_DURATION = 51;
 	public static final int LINE_CYCLE_DURATION = MODE2_DURATION + MODE3_DURATION + MODE0_DURATION;
 	public static final int IMAGE_CYCLE_DURATION = 154 * LINE_CYCLE_DURATION;
+	// Un pixel transparent dans les tampons de sprites
+	private static final byte TRANSPARENT = -1;
+	// La taille d'une image sauvegardée, à raison de 2 bits par pixel
+	private static final int PIXELS_PER_BYTE = 4, PACKED_FRAME_SIZE = LCD_WIDTH * LCD_HEIGHT / PIXELS_PER_BYTE;
+	// Les paramètres de l'empreinte FNV-1a sur 64 bits des images
+	private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L, FNV_PRIME = 0x100000001B3L;
 	// L'image actuellement affichée par le contrôleur LCD
 	private LcdImage displayedImage = BLANK_LCD_IMAGE;
 	/* Les contrôleurs ci-dessous sont des sous-classes de RamController,
@@ -79,24 +98,52 @@ public final class LcdController implements Component, Clocked {
 	private long nextNonIdleCycle = Long.MAX_VALUE;
 	// Cet attribut représente l'index de la ligne de la fenêtre à être dessinée
 	private int winY;
-	// Ce constructeur permet de construire la prochaine image
-	private LcdImage.Builder nextImageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+	// Ce constructeur permet de construire la prochaine image (moteur IMAGE_LINES
+	// seulement)
+	private LcdImage.Builder nextImageBuilder;
 	// Un contrôleur DMA permet d'assurer la copie rapide
-	private final DmaController dmaController = DmaController.getDmaController();
+	private final DmaController dmaController;
 	private final RegisterFile<Register> lcdRegs = new RegisterFile<>(LCDReg.values());
 	private long lcdOnCycle;
+	// Le dernier cycle lors duquel le contrôleur a été cyclé
+	private long currentCycle;
+	private final Renderer renderer;
+	// Les images en cours de dessin et affichée par le moteur FRAME_BUFFER, un
+	// index de couleur (0 à 3) par pixel, ligne après ligne
+	private byte[] drawingFrame = new byte[LCD_WIDTH * LCD_HEIGHT];
+	private byte[] displayedFrame = new byte[LCD_WIDTH * LCD_HEIGHT];
+	// Les tampons réutilisés à chaque ligne par le moteur FRAME_BUFFER
+	private final int[] lineSprites = new int[SPRITES_PER_LINE];
+	private final byte[] bgSpriteColors = new byte[LCD_WIDTH], fgSpriteColors = new byte[LCD_WIDTH];
 
 	/**
-	 * Construit un contrôleur LCD.
+	 * Construit un contrôleur LCD utilisant le moteur de rendu FRAME_BUFFER.
 	 * 
 	 * @param cpu
 	 *            le CPU avec lequel le contrôleur interagit
 	 */
 	public LcdController(Cpu cpu) {
+		this(cpu, Renderer.FRAME_BUFFER);
+	}
+
+	/**
+	 * Construit un contrôleur LCD utilisant le moteur de rendu donné.
+	 * 
+	 * @param cpu
+	 *            le CPU avec lequel le contrôleur interagit
+	 * @param renderer
+	 *            le moteur de rendu
+	 */
+	public LcdController(Cpu cpu, Renderer renderer) {
 		this.cpu = Objects.requireNonNull(cpu);
+		this.renderer = Objects.requireNonNull(renderer);
+		if (renderer == Renderer.IMAGE_LINES) {
+			nextImageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+		}
 
 		videoRamController = new VideoRamController(new Ram(AddressMap.VRAM_SIZE), AddressMap.VRAM_START);
 		oamRamController = new OamRamController(new Ram(AddressMap.OAM_SIZE), AddressMap.OAM_START);
+		dmaController = new DmaController(oamRamController);
 	}
 
 	/**
@@ -105,19 +152,65 @@ public final class LcdController implements Component, Clocked {
 	 * @return
 	 */
 	public LcdImage currentImage() {
-		return Objects.requireNonNull(displayedImage, "Displayed image cannot be null");
+		// Avec le moteur FRAME_BUFFER, l'image n'est construite que si elle est demandée
+		if (displayedImage == null) {
+			displayedImage = imageOf(displayedFrame);
+		}
+		return displayedImage;
+	}
+
+	/**
+	 * Copie l'image actuelle du contrôleur LCD dans le tableau donné, sous la forme
+	 * d'un index de couleur (0 à 3) par pixel, ligne après ligne.
+	 * 
+	 * @param destination
+	 *            le tableau de destination, de LCD_WIDTH * LCD_HEIGHT éléments
+	 * @throws IllegalArgumentException
+	 *             si le tableau n'a pas la bonne taille
+	 */
+	public void copyCurrentFrame(byte[] destination) {
+		Preconditions.checkArgument(destination.length == LCD_WIDTH * LCD_HEIGHT);
+
+		if (renderer == Renderer.FRAME_BUFFER) {
+			System.arraycopy(displayedFrame, 0, destination, 0, destination.length);
+		} else {
+			for (int y = 0; y < LCD_HEIGHT; ++y) {
+				for (int x = 0; x < LCD_WIDTH; ++x) {
+					destination[y * LCD_WIDTH + x] = (byte) displayedImage.get(x, y);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calcule l'empreinte (FNV-1a sur 64 bits) d'une image copiée par
+	 * copyCurrentFrame, qui permet de comparer des images sans les conserver.
+	 * 
+	 * @param frame
+	 *            l'image, sous la forme d'un index de couleur par pixel
+	 * @return l'empreinte de l'image
+	 */
+	public static long frameHash(byte[] frame) {
+		long hash = FNV_OFFSET_BASIS;
+		for (byte b : frame) {
+			hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+		}
+		return hash;
 	}
 
 	@Override
 	public void cycle(long cycle) {
+		currentCycle = cycle;
+
 		// Si le contrôleur était éteint et doit être rallumé, il est allumé
 		if (nextNonIdleCycle == Long.MAX_VALUE && isOn()) {
 			turnOn(cycle);
 		}
 
-		// Si la copie DMA est active, effectue la copie à raison d'un octet par cycle
+		// Si la copie DMA est active, copie les octets qui doivent l'avoir été à ce
+		// cycle, à raison d'un octet par cycle
 		if (dmaController.isActive()) {
-			dmaController.copy();
+			dmaController.copyUntil(cycle);
 		}
 
 		// Si le contrôleur est allumé et qu'il y a quelquechose à faire pendant ce
@@ -135,6 +228,22 @@ public final class LcdController implements Component, Clocked {
 		}
 	}
 
+	@Override
+	public long nextEventCycle(long cycle) {
+		// Si le contrôleur doit être rallumé, il travaille immédiatement
+		if (nextNonIdleCycle == Long.MAX_VALUE && isOn()) {
+			return cycle;
+		}
+
+		// Une copie DMA en cours est rattrapée à chaque cycle où le contrôleur travaille,
+		// et au plus tard lors de son dernier cycle
+		if (dmaController.isActive()) {
+			return Math.min(nextNonIdleCycle, dmaController.endCycle());
+		}
+
+		return nextNonIdleCycle;
+	}
+
 	/**
 	 * Cette méthode gère les opérations à effectuer, elle n'est appelée que s'il y
 	 * en a.
@@ -158,7 +267,11 @@ public final class LcdController implements Component, Clocked {
 				setMode(0);
 				// La ligne actuelle est effectivement dessinée lors du début du mode de dessin
 				// des sprites
-				nextImageBuilder.setLine(currentLine, computeLine(currentLine));
+				if (renderer == Renderer.FRAME_BUFFER) {
+					renderLine(currentLine);
+				} else {
+					nextImageBuilder.setLine(currentLine, computeLine(currentLine));
+				}
 				break;
 			case 0:
 				nextNonIdleCycle += MODE2_DURATION;
@@ -172,8 +285,15 @@ public final class LcdController implements Component, Clocked {
 				setMode(1);
 				// Lors de l'entrée dans la période vertical blank (VBLANK, mode 1), l'image
 				// entière est mise à jour
-				displayedImage = nextImageBuilder.build();
-				nextImageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+				if (renderer == Renderer.FRAME_BUFFER) {
+					byte[] drawnFrame = drawingFrame;
+					drawingFrame = displayedFrame;
+					displayedFrame = drawnFrame;
+					displayedImage = null;
+				} else {
+					displayedImage = nextImageBuilder.build();
+					nextImageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+				}
 				// L'index de la ligne de la fenêtre est remis à zéro, afin de pouvoir
 				// recommencer lors de la prochaine image
 				winY = 0;
@@ -303,6 +423,163 @@ public final class LcdController implements Component, Clocked {
 		return nextLine;
 	}
 
+	/**
+	 * Cette méthode dessine la ligne d'index donné directement dans l'image en
+	 * cours de dessin, sans allocation. Elle compose l'arrière-plan, la fenêtre et
+	 * les sprites exactement comme computeLine.
+	 * 
+	 * @param lineIndex
+	 *            l'index de la ligne
+	 */
+	private void renderLine(int lineIndex) {
+		Arrays.fill(bgSpriteColors, TRANSPARENT);
+		Arrays.fill(fgSpriteColors, TRANSPARENT);
+
+		if (areSpritesActive()) {
+			renderSprites(lineIndex);
+		}
+
+		int adjustedWX = Math.max(lcdRegs.get(LCDReg.WX) - WX_OFFSET, 0);
+		boolean windowDrawn = lineIndex >= lcdRegs.get(LCDReg.WY) && isWindowActive(adjustedWX);
+		int windowStart = windowDrawn ? adjustedWX : LCD_WIDTH;
+		boolean bgActive = isBackgroundActive();
+		boolean tileSource = lcdRegs.testBit(LCDReg.LCDC, LCDC.TILE_SOURCE);
+		int bgp = lcdRegs.get(LCDReg.BGP);
+		int offset = lineIndex * LCD_WIDTH;
+
+		int bgY = (lcdRegs.get(LCDReg.SCY) + lineIndex) % BG_SIZE;
+		int bgMap = AddressMap.BG_DISPLAY_DATA[lcdRegs.testBit(LCDReg.LCDC, LCDC.BG_AREA) ? 1 : 0]
+				+ (bgY / TILE_SIZE) * BG_TILE_SIZE;
+		int bgTileLine = bgTileLineIndex(lineIndex);
+		int scx = lcdRegs.get(LCDReg.SCX);
+		int tileRow = 0;
+
+		// Arrière-plan et sprites d'arrière-plan, jusqu'au début de la fenêtre
+		for (int x = 0; x < windowStart; ++x) {
+			int color = bgSpriteColors[x] == TRANSPARENT ? 0 : bgSpriteColors[x];
+
+			if (bgActive) {
+				int bgX = (scx + x) % BG_SIZE;
+				if (x == 0 || bgX % TILE_SIZE == 0) {
+					tileRow = videoRamController.tileRow(videoRamController.read(bgMap + bgX / TILE_SIZE), bgTileLine,
+							tileSource, false);
+				}
+				int bgColor = pixelColor(tileRow, bgX % TILE_SIZE);
+				if (bgSpriteColors[x] == TRANSPARENT || bgColor != 0) {
+					color = mapColor(bgp, bgColor);
+				}
+			}
+
+			drawingFrame[offset + x] = (byte) color;
+		}
+
+		// La fenêtre remplace tout ce qui se trouve à sa droite
+		if (windowDrawn) {
+			int winMap = AddressMap.BG_DISPLAY_DATA[lcdRegs.testBit(LCDReg.LCDC, LCDC.WIN_AREA) ? 1 : 0]
+					+ (winY / TILE_SIZE) * WIN_TILE_SIZE;
+			int winTileLine = winTileLineIndex(winY);
+
+			for (int x = windowStart; x < LCD_WIDTH; ++x) {
+				int winX = x - adjustedWX;
+				if (winX % TILE_SIZE == 0) {
+					tileRow = videoRamController.tileRow(videoRamController.read(winMap + winX / TILE_SIZE), winTileLine,
+							tileSource, false);
+				}
+				drawingFrame[offset + x] = (byte) mapColor(bgp, pixelColor(tileRow, winX % TILE_SIZE));
+			}
+			winY++;
+		}
+
+		// Les sprites d'avant-plan sont dessinés par-dessus
+		for (int x = 0; x < LCD_WIDTH; ++x) {
+			if (fgSpriteColors[x] != TRANSPARENT) {
+				drawingFrame[offset + x] = fgSpriteColors[x];
+			}
+		}
+	}
+
+	/**
+	 * Cette méthode dessine les sprites intersectant la ligne donnée dans les
+	 * tampons des sprites d'arrière et d'avant-plan, le sprite le plus prioritaire
+	 * l'emportant pour chaque pixel.
+	 * 
+	 * @param lineIndex
+	 *            l'index de la ligne
+	 */
+	private void renderSprites(int lineIndex) {
+		int spriteHeight = getHeight();
+		int spriteCount = oamRamController.spritesIntersectingLine(lineIndex, spriteHeight, lineSprites);
+
+		for (int i = 0; i < spriteCount; ++i) {
+			int spriteIndex = unpackIndex(lineSprites[i]);
+			int spriteX = unpackX(lineSprites[i]) - SPRITE_XOFFSET;
+			boolean hFlip = oamRamController.readAttr(spriteIndex, ATTRIBUTES.FLIP_H);
+			boolean vFlip = oamRamController.readAttr(spriteIndex, ATTRIBUTES.FLIP_V);
+			int spriteTileIndex = oamRamController.readAttr(spriteIndex, DISPLAY_DATA.TILE_INDEX);
+			int spriteY = oamRamController.readAttr(spriteIndex, DISPLAY_DATA.Y_COORD) - SPRITE_YOFFSET;
+			int palette = lcdRegs.get(oamRamController.readAttr(spriteIndex, ATTRIBUTES.PALETTE) ? LCDReg.OBP1 : LCDReg.OBP0);
+			byte[] layer = oamRamController.readAttr(spriteIndex, ATTRIBUTES.BEHIND_BG) ? bgSpriteColors : fgSpriteColors;
+
+			int tileRow = videoRamController.tileRow(spriteTileIndex,
+					spriteTileLineIndex(lineIndex, spriteY, vFlip, spriteHeight), true, hFlip);
+
+			// Les sprites sont parcourus par ordre de priorité: un pixel déjà dessiné par
+			// un sprite plus prioritaire n'est pas remplacé
+			for (int px = 0; px < TILE_SIZE; ++px) {
+				int x = spriteX + px;
+				int color = pixelColor(tileRow, px);
+				if (x >= 0 && x < LCD_WIDTH && color != 0 && layer[x] == TRANSPARENT) {
+					layer[x] = (byte) mapColor(palette, color);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Cette méthode extrait l'index de couleur d'un pixel d'une ligne de tuile.
+	 *
+	 * @param tileRow
+	 *            la ligne de tuile (MSB et LSB), le pixel de gauche au bit 0
+	 * @param pixel
+	 *            l'index du pixel dans la ligne
+	 * @return l'index de couleur (0 à 3)
+	 */
+	private static int pixelColor(int tileRow, int pixel) {
+		return (tileRow >>> (Byte.SIZE + pixel) & 1) << 1 | (tileRow >>> pixel & 1);
+	}
+
+	private static int mapColor(int palette, int color) {
+		return Bits.extract(palette, 2 * color, 2);
+	}
+
+	/**
+	 * Cette méthode construit une image à partir des index de couleur de ses
+	 * pixels.
+	 *
+	 * @param frame
+	 *            les index de couleur, ligne après ligne
+	 * @return l'image
+	 */
+	private static LcdImage imageOf(byte[] frame) {
+		LcdImage.Builder imageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+
+		for (int y = 0; y < LCD_HEIGHT; ++y) {
+			LcdImageLine.Builder lineBuilder = new LcdImageLine.Builder(LCD_WIDTH);
+			for (int x = 0; x < LCD_WIDTH; x += Byte.SIZE) {
+				int msb = 0, lsb = 0;
+				for (int px = 0; px < Byte.SIZE; ++px) {
+					int color = frame[y * LCD_WIDTH + x + px];
+					msb |= (color >> 1) << px;
+					lsb |= (color & 1) << px;
+				}
+				lineBuilder.setBytes(x, msb, lsb);
+			}
+			imageBuilder.setLine(y, lineBuilder.build());
+		}
+
+		return imageBuilder.build();
+	}
+
 	/**
 	 * Cette méthode permet de calculer une ligne d'index donné de l'arrière-plan ou
 	 * de la fenêtre.
@@ -340,9 +617,9 @@ public final class LcdController implements Component, Clocked {
 			int tileTypeIndex = videoRamController.read(addressInVram);
 
 			// Les octets (MSB et LSB) de la ligne de la tuile
-			int[] tileLineBytes = videoRamController.tileLineBytes(tileTypeIndex, tileLineIndex, tileSource);
+			int tileRow = videoRamController.tileRow(tileTypeIndex, tileLineIndex, tileSource, false);
 
-			nextBGLineBuilder.setBytes(Byte.SIZE * i, Bits.reverse8(tileLineBytes[1]), Bits.reverse8(tileLineBytes[0]));
+			nextBGLineBuilder.setBytes(Byte.SIZE * i, tileRow >>> Byte.SIZE, tileRow & 0xFF);
 		}
 
 		return nextBGLineBuilder.build().mapColors(lcdRegs.get(LCDReg.BGP));
@@ -376,14 +653,10 @@ public final class LcdController implements Component, Clocked {
 			int spriteTileIndex = oamRamController.readAttr(spriteIndex, DISPLAY_DATA.TILE_INDEX);
 			int spriteY = oamRamController.readAttr(spriteIndex, DISPLAY_DATA.Y_COORD) - SPRITE_YOFFSET;
 
-			int[] tileLineBytes = videoRamController.tileLineBytes(spriteTileIndex,
-					spriteTileLineIndex(lineIndex, spriteY, vFlip, spriteHeight));
+			int tileRow = videoRamController.tileRow(spriteTileIndex,
+					spriteTileLineIndex(lineIndex, spriteY, vFlip, spriteHeight), true, hFlip);
 
-			if (hFlip) {
-				spriteLineBuilder.setBytes(0, tileLineBytes[1], tileLineBytes[0]);
-			} else {
-				spriteLineBuilder.setBytes(0, Bits.reverse8(tileLineBytes[1]), Bits.reverse8(tileLineBytes[0]));
-			}
+			spriteLineBuilder.setBytes(0, tileRow >>> Byte.SIZE, tileRow & 0xFF);
 
 			spriteLines[i] = spriteLineBuilder.build().shift(-spriteX)
 					.mapColors(lcdRegs.get(spritePalette ? LCDReg.OBP1 : LCDReg.OBP0));
@@ -554,7 +827,7 @@ public final class LcdController implements Component, Clocked {
 			case AddressMap.REG_DMA:
 				lcdRegs.set(LCDReg.DMA, data);
 				// Toute écriture dans DMA démarre la copie rapide
-				dmaController.start(data);
+				dmaController.start(data, currentCycle);
 				break;
 			default:
 				lcdRegs.set(address - AddressMap.REGS_LCD_START, data);
@@ -562,6 +835,122 @@ public final class LcdController implements Component, Clocked {
 		}
 	}
 
+	@Override
+	public boolean isMappedToPage(int page) {
+		return Component.pageIntersects(page, AddressMap.VRAM_START, AddressMap.VRAM_END)
+				|| Component.pageIntersects(page, AddressMap.OAM_START, AddressMap.OAM_END)
+				|| Component.pageIntersects(page, AddressMap.REGS_LCD_START, AddressMap.REGS_LCD_END);
+	}
+
+	/**
+	 * Copie l'état du contrôleur LCD donné: registres, VRAM, OAM, copie DMA en
+	 * cours et images en cours de dessin et affichée. Le processeur et le bus ne
+	 * sont pas copiés.
+	 * 
+	 * @param other
+	 *            le contrôleur dont l'état est copié
+	 * @throws IllegalArgumentException
+	 *             si les deux contrôleurs n'utilisent pas le même moteur de rendu
+	 */
+	public void copyStateFrom(LcdController other) {
+		Preconditions.checkArgument(other.renderer == renderer);
+
+		lcdRegs.copyFrom(other.lcdRegs);
+		videoRamController.copyStateFrom(other.videoRamController);
+		oamRamController.copyStateFrom(other.oamRamController);
+		dmaController.copyStateFrom(other.dmaController);
+
+		nextNonIdleCycle = other.nextNonIdleCycle;
+		winY = other.winY;
+		lcdOnCycle = other.lcdOnCycle;
+		currentCycle = other.currentCycle;
+		// Les images sont immuables et peuvent être partagées
+		displayedImage = other.displayedImage;
+
+		if (renderer == Renderer.FRAME_BUFFER) {
+			System.arraycopy(other.drawingFrame, 0, drawingFrame, 0, drawingFrame.length);
+			System.arraycopy(other.displayedFrame, 0, displayedFrame, 0, displayedFrame.length);
+		} else {
+			for (int y = 0; y < LCD_HEIGHT; ++y) {
+				nextImageBuilder.setLine(y, other.nextImageBuilder.imageLines.get(y));
+			}
+		}
+	}
+
+	/**
+	 * L'état du contrôleur est ses registres, la VRAM, l'OAM, la copie DMA en
+	 * cours, ses cycles et ses deux images, à raison de 2 bits par pixel. Seul
+	 * l'état du moteur de rendu FRAME_BUFFER peut être sauvegardé.
+	 * 
+	 * @return la taille de l'état sauvegardé
+	 */
+	@Override
+	public int stateSize() {
+		return lcdRegs.registerFile.length + videoRamController.stateSize() + oamRamController.stateSize()
+				+ dmaController.stateSize() + 3 * Long.BYTES + Integer.BYTES + 2 * PACKED_FRAME_SIZE;
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             si le contrôleur n'utilise pas le moteur FRAME_BUFFER
+	 */
+	@Override
+	public void saveState(ByteBuffer buffer) {
+		checkSnapshottable();
+		buffer.put(lcdRegs.registerFile);
+		videoRamController.saveState(buffer);
+		oamRamController.saveState(buffer);
+		dmaController.saveState(buffer);
+		buffer.putLong(nextNonIdleCycle);
+		buffer.putLong(lcdOnCycle);
+		buffer.putLong(currentCycle);
+		buffer.putInt(winY);
+		saveFrame(drawingFrame, buffer);
+		saveFrame(displayedFrame, buffer);
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             si le contrôleur n'utilise pas le moteur FRAME_BUFFER
+	 */
+	@Override
+	public void loadState(ByteBuffer buffer) {
+		checkSnapshottable();
+		buffer.get(lcdRegs.registerFile);
+		videoRamController.loadState(buffer);
+		oamRamController.loadState(buffer);
+		dmaController.loadState(buffer);
+		nextNonIdleCycle = buffer.getLong();
+		lcdOnCycle = buffer.getLong();
+		currentCycle = buffer.getLong();
+		winY = buffer.getInt();
+		loadFrame(drawingFrame, buffer);
+		loadFrame(displayedFrame, buffer);
+		displayedImage = null;
+	}
+
+	private void checkSnapshottable() {
+		if (renderer != Renderer.FRAME_BUFFER)
+			throw new IllegalStateException("Only the FRAME_BUFFER renderer can be saved");
+	}
+
+	// Les index de couleur (2 bits) de quatre pixels consécutifs sont regroupés
+	// dans un octet
+	private static void saveFrame(byte[] frame, ByteBuffer buffer) {
+		for (int i = 0; i < frame.length; i += PIXELS_PER_BYTE) {
+			buffer.put((byte) (frame[i] | frame[i + 1] << 2 | frame[i + 2] << 4 | frame[i + 3] << 6));
+		}
+	}
+
+	private static void loadFrame(byte[] frame, ByteBuffer buffer) {
+		for (int i = 0; i < frame.length; i += PIXELS_PER_BYTE) {
+			int packed = buffer.get();
+			for (int p = 0; p < PIXELS_PER_BYTE; ++p) {
+				frame[i + p] = (byte) Bits.extract(packed, 2 * p, 2);
+			}
+		}
+	}
+
 	/**
 	 * Cette méthode permet de modifier les registre LY ou LYC de manière correcte,
 	 * c'est à dire en prenant garde aux interruptions à lever.
@@ -24,6 +24,8 @@ public final class LcdImage {
 	public static final LcdImage BLANK_LCD_IMAGE = new LcdImage(LCD_WIDTH, LCD_HEIGHT,
 			Collections.nCopies(LCD_HEIGHT, BLANK_LCD_IMAGE_LINE));
 
+	private static final int[] COLOR_INDICES = { 0, 1, 2, 3 };
+
 	private final int width, height;
 	private final List<LcdImageLine> imageLines;
 
@@ -68,6 +70,47 @@ public final class LcdImage {
 		return (lsb | msb);
 	}
 
+	/**
+	 * Exporte d'un coup tous les pixels de l'image dans le tableau donné, ligne
+	 * après ligne, chaque index de couleur (0 à 3) étant remplacé par la valeur
+	 * correspondante de la table donnée (par exemple une couleur ARGB).
+	 * 
+	 * @param colors
+	 *            la table des 4 valeurs associées aux index de couleur
+	 * @param destination
+	 *            le tableau de destination, d'au moins width * height éléments
+	 * @throws IllegalArgumentException
+	 *             si la table n'a pas 4 valeurs ou si le tableau de destination est
+	 *             trop petit
+	 */
+	public void export(int[] colors, int[] destination) {
+		Preconditions.checkArgument(colors.length == 4 && destination.length >= width * height);
+
+		for (int y = 0; y < height; ++y) {
+			BitVector msb = imageLines.get(y).getMsb(), lsb = imageLines.get(y).getLsb();
+			for (int x = 0; x < width; x += Integer.SIZE) {
+				int msbBits = msb.getInt(x / Integer.SIZE), lsbBits = lsb.getInt(x / Integer.SIZE);
+				int end = Math.min(Integer.SIZE, width - x);
+				for (int i = 0; i < end; ++i) {
+					destination[y * width + x + i] = colors[(msbBits >>> i & 1) << 1 | (lsbBits >>> i & 1)];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Exporte d'un coup les index de couleur (0 à 3) de tous les pixels de l'image
+	 * dans le tableau donné, ligne après ligne.
+	 * 
+	 * @param destination
+	 *            le tableau de destination, d'au moins width * height éléments
+	 * @throws IllegalArgumentException
+	 *             si le tableau de destination est trop petit
+	 */
+	public void exportColorIndices(int[] destination) {
+		export(COLOR_INDICES, destination);
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		for (int i = 0; i < height; ++i) {
@@ -1,10 +1,12 @@
 package ch.epfl.gameboj.component.memory;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Snapshottable;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 
 /**
@@ -22,7 +24,7 @@ import ch.epfl.gameboj.component.cartridge.Cartridge;
  * @author David Cian (287967)
  *
  */
-public final class BootRomController implements Component {
+public final class BootRomController implements Component, Snapshottable {
     
     private final Rom bootRom = new Rom(BootRom.DATA);
     private final Cartridge cartridge;
@@ -82,4 +84,68 @@ public final class BootRomController implements Component {
         }
     }
 
+    /**
+     * Retourne la projection de la ROM à l'adresse donnée: la banque de la
+     * cartouche qui y est projetée, décalée du nombre de banques de la cartouche
+     * si la mémoire de démarrage recouvre encore le début de la banque 0. Une
+     * projection a ainsi toujours le même contenu.
+     * 
+     * @param address
+     *            l'adresse, dans la ROM (0x0000 à 0x7FFF)
+     * @return la projection, entre 0 et romMappingCount() exclu
+     */
+    public int romMappingAt(int address) {
+        int bank = cartridge.romBankAt(address);
+        return isActivated && address < AddressMap.ROM_BANK_01_START ? bank + cartridge.romBankCount() : bank;
+    }
+
+    /**
+     * Retourne le nombre de projections possibles de la ROM, avec et sans la
+     * mémoire de démarrage.
+     * 
+     * @return le nombre de projections
+     */
+    public int romMappingCount() {
+        return 2 * cartridge.romBankCount();
+    }
+
+    /**
+     * Copie l'état (activée ou non) de la mémoire de démarrage du contrôleur
+     * donné, la cartouche n'étant pas copiée.
+     * 
+     * @param other
+     *            le contrôleur dont l'état est copié
+     */
+    public void copyStateFrom(BootRomController other) {
+        isActivated = other.isActivated;
+    }
+
+    /**
+     * L'état du contrôleur est uniquement l'activation de la mémoire de démarrage,
+     * la cartouche étant sauvegardée séparément.
+     * 
+     * @return la taille de l'état sauvegardé
+     */
+    @Override
+    public int stateSize() {
+        return 1;
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) (isActivated ? 1 : 0));
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        isActivated = buffer.get() != 0;
+    }
+
+    @Override
+    public boolean isMappedToPage(int page) {
+        return Component.pageIntersects(page, AddressMap.BOOT_ROM_START, AddressMap.BOOT_ROM_END)
+                || Component.pageIntersects(page, AddressMap.REG_BOOT_ROM_DISABLE, AddressMap.REG_BOOT_ROM_DISABLE + 1)
+                || cartridge.isMappedToPage(page);
+    }
+
 }
@@ -50,9 +50,33 @@ public final class OamRamController extends RamController {
 	 * @return un tableau contenant les abscisses et les index des tuiles
 	 */
 	public Integer[] spritesIntersectingLine(int lineIndex, int height) {
-		int scanIndex = 0, foundSprites = 0;
+		int[] intersect = new int[SPRITES_PER_LINE];
+		int foundSprites = spritesIntersectingLine(lineIndex, height, intersect);
 
-		Integer[] intersect = new Integer[SPRITES_PER_LINE];
+		Integer[] intersectIndex = new Integer[foundSprites];
+		for (int i = 0; i < foundSprites; ++i) {
+			intersectIndex[i] = intersect[i];
+		}
+
+		return intersectIndex;
+	}
+
+	/**
+	 * Cette méthode calcule les sprites qui intersectent la ligne d'index donné,
+	 * sans allouer de tableau: leurs informations (abscisse et index, par ordre de
+	 * priorité) sont écrites au début du tableau donné.
+	 * 
+	 * @param lineIndex
+	 *            l'index de la ligne
+	 * @param height
+	 *            la hauteur des sprites
+	 * @param intersect
+	 *            le tableau à remplir, d'au moins SPRITES_PER_LINE éléments
+	 * @return le nombre de sprites trouvés
+	 */
+	public int spritesIntersectingLine(int lineIndex, int height, int[] intersect) {
+		Objects.checkFromIndexSize(0, SPRITES_PER_LINE, intersect.length);
+		int scanIndex = 0, foundSprites = 0;
 
 		// Tant que aucune limite n'est atteinte (10 par ligne ou 40 en total),
 		// continuer à chercher les intersections
@@ -67,30 +91,9 @@ public final class OamRamController extends RamController {
 			scanIndex++;
 		}
 
-		Integer[] intersectIndex = trimIntArray(intersect, foundSprites);
-
-		Arrays.sort(intersectIndex);
-
-		return intersectIndex;
-	}
-
-	/**
-	 * Cette méthode permet de rétrécir un tableau à sa taille "occupée".
-	 * 
-	 * @param array
-	 *            l'array à "couper"
-	 * @param trimIndex
-	 *            l'index auquel il faut "couper"
-	 * @return le tableau rétréci à la capacité voulue
-	 */
-	private Integer[] trimIntArray(Integer[] array, int trimIndex) {
-		Integer[] intersectIndex = new Integer[trimIndex];
+		Arrays.sort(intersect, 0, foundSprites);
 
-		for (int i = 0; i < trimIndex; ++i) {
-			intersectIndex[i] = array[i];
-		}
-
-		return intersectIndex;
+		return foundSprites;
 	}
 
 	private int packSpriteInfo(int spriteIndex) {
@@ -1,6 +1,9 @@
 package ch.epfl.gameboj.component.memory;
 
+import java.nio.ByteBuffer;
+
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Snapshottable;
 
 /**
  * Ram : une mémoire vive dont le contenu peut changer au cours du temps.
@@ -9,7 +12,7 @@ import ch.epfl.gameboj.Preconditions;
  * @author David Cian (287967)
  */
 
-public final class Ram {
+public final class Ram implements Snapshottable {
     private final byte[] data;
     
     /**
@@ -70,5 +73,38 @@ public final class Ram {
     public void write(int index, int value) {  
         data[index] = (byte) Preconditions.checkBits8(value);
     }
+
+    /**
+     * Remplace le contenu de la mémoire par celui de la mémoire donnée.
+     * 
+     * @param other
+     *            la mémoire dont le contenu est copié
+     * @throws IllegalArgumentException
+     *             si les deux mémoires n'ont pas la même taille
+     */
+    public void copyFrom(Ram other) {
+        Preconditions.checkArgument(other.data.length == data.length);
+        System.arraycopy(other.data, 0, data, 0, data.length);
+    }
     
+
+    /**
+     * L'état d'une mémoire vive est son contenu.
+     * 
+     * @return la taille de la mémoire
+     */
+    @Override
+    public int stateSize() {
+        return data.length;
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put(data);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        buffer.get(data);
+    }
 }
@@ -1,9 +1,11 @@
 package ch.epfl.gameboj.component.memory;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Snapshottable;
 
 /**
  * RamController : une mémoire vive dont le contenu peut changer au cours du temps.
@@ -12,7 +14,7 @@ import ch.epfl.gameboj.component.Component;
  * @author David Cian (287967)
  */
 
-public class RamController implements Component {
+public class RamController implements Component, Snapshottable {
 
     private final Ram ram;
     private final int startAddress;
@@ -106,4 +108,41 @@ public class RamController implements Component {
         }  
     }
 
+    @Override
+    public boolean isMappedToPage(int page) {
+        return Component.pageIntersects(page, startAddress, endAddress);
+    }
+
+    /**
+     * Remplace le contenu de la mémoire vive contrôlée par celui de la mémoire
+     * contrôlée par le contrôleur donné.
+     * 
+     * @param other
+     *            le contrôleur dont la mémoire est copiée
+     * @throws IllegalArgumentException
+     *             si les deux mémoires n'ont pas la même taille
+     */
+    public void copyStateFrom(RamController other) {
+        ram.copyFrom(other.ram);
+    }
+
+    /**
+     * L'état d'un contrôleur est celui de la mémoire vive qu'il contrôle.
+     * 
+     * @return la taille de la mémoire vive
+     */
+    @Override
+    public int stateSize() {
+        return ram.stateSize();
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        ram.saveState(buffer);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        ram.loadState(buffer);
+    }
 }
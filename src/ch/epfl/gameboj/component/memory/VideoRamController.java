@@ -1,6 +1,10 @@
 package ch.epfl.gameboj.component.memory;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.bits.Bits;
 
 /**
  * Cette classe rajoute des fonctionnalités de VRAM à un RamController.
@@ -14,40 +18,72 @@ public final class VideoRamController extends RamController {
 	private static final int BYTES_PER_TILE = 16;
 	private static final int TILE_SOURCE_SIZE = 256;
 	private static final int TILE_SOURCE_HALF = TILE_SOURCE_SIZE / 2;
+	// Les données des tuiles occupent le début de la VRAM, jusqu'aux tables de
+	// l'arrière-plan
+	private static final int TILE_DATA_END = AddressMap.BG_DISPLAY_DATA[0];
+	private static final int TILE_ROW_COUNT = (TILE_DATA_END - AddressMap.VRAM_START) / 2;
+	// Hors de la plage des lignes décodées (32 bits non signés), puisqu'une ligne
+	// dont les deux octets valent 0xFF vaut -1 sur 32 bits
+	private static final long INVALID_ROW = -1L;
+
+	// Les lignes de tuiles décodées: les octets LSB et MSB dans l'ordre de la VRAM
+	// (bits 0 à 15), puis renversés (bits 16 à 31), INVALID_ROW si la ligne doit
+	// être relue
+	private final long[] decodedRows = new long[TILE_ROW_COUNT];
 
 	public VideoRamController(Ram ram, int startAddress) {
 		super(ram, startAddress);
+		Arrays.fill(decodedRows, INVALID_ROW);
 	}
 
 	/**
-	 * Cette méthode permet d'obtenir les octets (MSB et LSB) dans les 384 tuiles du
-	 * tileset.
+	 * Modifie le contenu de la VRAM et invalide la ligne de tuile décodée
+	 * correspondante, le cas échéant.
 	 * 
-	 * @param tileTypeIndex
-	 *            l'index de la tuile dans le tileset
-	 * @param tileLineIndex
-	 *            l'index de la ligne au sein de la tuile
-	 * @param tileSource
-	 *            la source de la tuile
-	 * @return
+	 * @param address
+	 *            l'adresse
+	 * @param data
+	 *            la valeur
 	 */
-	public int[] tileLineBytes(int tileTypeIndex, int tileLineIndex, boolean tileSource) {
-		int tileByteAddress = tileByteAddress(tileTypeIndex, tileLineIndex, tileSource);
-		return new int[] { read(tileByteAddress), read(tileByteAddress + 1) };
+	@Override
+	public void write(int address, int data) {
+		super.write(address, data);
+		if (address >= AddressMap.VRAM_START && address < TILE_DATA_END) {
+			decodedRows[(address - AddressMap.VRAM_START) / 2] = INVALID_ROW;
+		}
 	}
 
 	/**
-	 * Cette méthode permet d'obtenir les octets (MSB ou LSB) dans les 384 tuiles du
-	 * tileset, pour un sprite.
+	 * Cette méthode permet d'obtenir une ligne de 8 pixels d'une tuile, décodée
+	 * une seule fois puis conservée jusqu'à la prochaine écriture dans ses octets.
 	 * 
 	 * @param tileTypeIndex
 	 *            l'index de la tuile dans le tileset
 	 * @param tileLineIndex
 	 *            l'index de la ligne au sein de la tuile
-	 * @return
+	 * @param tileSource
+	 *            la source de la tuile
+	 * @param hFlip
+	 *            vrai si la ligne doit être retournée horizontalement
+	 * @return les octets MSB (bits 8 à 15) et LSB (bits 0 à 7) de la ligne, le
+	 *         pixel de gauche étant au bit 0 (ou au bit 7 si la ligne est
+	 *         retournée)
 	 */
-	public int[] tileLineBytes(int tileTypeIndex, int tileLineIndex) {
-		return tileLineBytes(tileTypeIndex, tileLineIndex, true);
+	public int tileRow(int tileTypeIndex, int tileLineIndex, boolean tileSource, boolean hFlip) {
+		int rowIndex = (tileByteAddress(tileTypeIndex, tileLineIndex, tileSource) - AddressMap.VRAM_START) / 2;
+		long row = decodedRows[rowIndex];
+		if (row == INVALID_ROW) {
+			row = decodeRow(rowIndex);
+			decodedRows[rowIndex] = row;
+		}
+		return (int) (hFlip ? row & 0xFFFF : row >>> 16);
+	}
+
+	private long decodeRow(int rowIndex) {
+		int address = AddressMap.VRAM_START + 2 * rowIndex;
+		int lsb = read(address);
+		int msb = read(address + 1);
+		return Integer.toUnsignedLong(Bits.reverse8(msb) << 24 | Bits.reverse8(lsb) << 16 | msb << 8 | lsb);
 	}
 
 	/**
@@ -79,4 +115,34 @@ public final class VideoRamController extends RamController {
 			}
 		}
 	}
+
+	/**
+	 * Remplace le contenu de la VRAM par celui du contrôleur donné, ainsi que ses
+	 * lignes de tuiles décodées.
+	 * 
+	 * @param other
+	 *            le contrôleur dont la VRAM est copiée
+	 */
+	@Override
+	public void copyStateFrom(RamController other) {
+		super.copyStateFrom(other);
+		if (other instanceof VideoRamController) {
+			System.arraycopy(((VideoRamController) other).decodedRows, 0, decodedRows, 0, decodedRows.length);
+		} else {
+			Arrays.fill(decodedRows, INVALID_ROW);
+		}
+	}
+
+	/**
+	 * Remplace le contenu de la VRAM par celui lu dans le tampon donné, toutes les
+	 * lignes de tuiles devant alors être décodées à nouveau.
+	 * 
+	 * @param buffer
+	 *            le tampon dans lequel lire
+	 */
+	@Override
+	public void loadState(ByteBuffer buffer) {
+		super.loadState(buffer);
+		Arrays.fill(decodedRows, INVALID_ROW);
+	}
 }
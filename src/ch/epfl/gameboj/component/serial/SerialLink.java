@@ -0,0 +1,204 @@
+package ch.epfl.gameboj.component.serial;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.epfl.gameboj.Preconditions;
+
+/**
+ * Cette classe modélise un câble reliant les ports série de deux Gameboy du
+ * même processus, chacune pouvant être exécutée par son propre fil, ou les deux
+ * à tour de rôle par un seul fil.
+ *
+ * Les cycles des deux Gameboy, qui partent tous deux de 0, servent d'horloge
+ * commune, et chaque extrémité publie le cycle atteint par sa Gameboy. Un
+ * transfert a lieu au cycle où se termine celui du maître (la Gameboy qui
+ * fournit l'horloge): l'octet reçu par le maître est celui qu'a préparé l'autre
+ * Gameboy avant ce cycle, et celle-ci termine son transfert à ce même cycle. Le
+ * résultat ne dépend ainsi jamais de la vitesse relative des fils.
+ *
+ * Pour cela, une Gameboy ne va pas plus loin qu'elle ne le peut sans connaître
+ * l'état de l'autre:
+ * <ul>
+ * <li>le maître s'arrête à la fin de son transfert tant que l'autre Gameboy
+ * n'a pas atteint ce cycle;</li>
+ * <li>une Gameboy attendant un transfert sur horloge externe s'arrête avant le
+ * premier cycle auquel un transfert du maître pourrait se terminer.</li>
+ * </ul>
+ * Dans les deux cas, GameBoy.runUntil retourne avant le cycle demandé, et doit
+ * être appelée à nouveau une fois que l'autre Gameboy a avancé. Les deux
+ * Gameboy doivent donc être exécutées, en parallèle ou à tour de rôle.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class SerialLink {
+
+    // La valeur indiquant l'absence d'octet préparé ou livré
+    private static final long NONE = -1;
+    private static final long NEVER = Long.MAX_VALUE;
+    // L'octet reçu lorsqu'aucun transfert n'est préparé à l'autre extrémité
+    private static final int DISCONNECTED_DATA = 0xFF;
+
+    private final End first = new End();
+    private final End second = new End();
+
+    private SerialLink() {
+        first.peer = second;
+        second.peer = first;
+    }
+
+    /**
+     * Relie les deux ports série donnés par un nouveau câble.
+     *
+     * @param port1
+     *            le premier port
+     * @param port2
+     *            le second port
+     * @return le câble
+     * @throws NullPointerException
+     *             si l'un des ports est nul
+     * @throws IllegalArgumentException
+     *             si les deux ports sont identiques, ou si l'un d'eux est déjà
+     *             relié
+     */
+    public static SerialLink connect(SerialPort port1, SerialPort port2) {
+        Preconditions.checkArgument(Objects.requireNonNull(port1) != Objects.requireNonNull(port2));
+        SerialLink link = new SerialLink();
+        port1.connect(link.first);
+        port2.connect(link.second);
+        return link;
+    }
+
+    /**
+     * Débranche le câble: les transferts sur horloge interne reçoivent alors
+     * 0xFF, comme si l'autre Gameboy était éteinte, et aucune Gameboy n'attend
+     * plus l'autre.
+     */
+    public void disconnect() {
+        first.connected = false;
+        second.connected = false;
+    }
+
+    // Un octet préparé ou livré est accompagné du cycle auquel il l'a été
+    private static long pack(long cycle, int data) {
+        return cycle << Byte.SIZE | data;
+    }
+
+    private static long cycleOf(long packed) {
+        return packed >>> Byte.SIZE;
+    }
+
+    private static int dataOf(long packed) {
+        return (int) (packed & 0xFF);
+    }
+
+    /**
+     * Une extrémité du câble, utilisée par le port série qui y est relié.
+     */
+    static final class End {
+        private End peer;
+        private volatile boolean connected = true;
+
+        // Le cycle atteint par la Gameboy de cette extrémité: tous les cycles
+        // précédents ont été exécutés
+        private final AtomicLong progress = new AtomicLong();
+        // La fin du transfert sur horloge interne en cours de cette extrémité
+        private final AtomicLong transferEnd = new AtomicLong(NEVER);
+        // L'octet d'un transfert sur horloge externe en attente, et l'octet reçu
+        // du maître en échange
+        private final AtomicLong posted = new AtomicLong(NONE);
+        private final AtomicLong delivered = new AtomicLong(NONE);
+
+        boolean isConnected() {
+            return connected;
+        }
+
+        // Publie le cycle atteint, qui ne fait qu'augmenter
+        void advance(long cycle) {
+            if (cycle > progress.get()) {
+                progress.lazySet(cycle);
+            }
+        }
+
+        // Publie la fin du transfert sur horloge interne en cours, ou jamais
+        void startTransfer(long endCycle) {
+            transferEnd.set(endCycle);
+        }
+
+        // Prépare, au cycle donné, un transfert sur horloge externe qui attend le
+        // maître
+        void post(int data, long cycle) {
+            posted.set(pack(cycle, data));
+        }
+
+        void cancel() {
+            posted.set(NONE);
+        }
+
+        // Vrai si l'autre extrémité a atteint le cycle donné, ce qui fixe son état
+        // pour un transfert se terminant à ce cycle
+        boolean peerReached(long cycle) {
+            return !connected || peer.progress.get() >= cycle;
+        }
+
+        /**
+         * Termine un transfert sur horloge interne au cycle donné, que l'autre
+         * extrémité doit avoir atteint: si elle a préparé un transfert avant ce
+         * cycle, les octets sont échangés et le sien lui est livré avec ce cycle.
+         */
+        int exchange(int data, long cycle) {
+            if (connected) {
+                long received = peer.posted.get();
+                // Un octet préparé au cycle même du transfert ne compte pas, sans
+                // quoi le résultat dépendrait de l'ordre d'exécution des
+                // composants de l'autre Gameboy
+                if (received != NONE && cycleOf(received) < cycle) {
+                    peer.posted.set(NONE);
+                    peer.delivered.set(pack(cycle, data));
+                    transferEnd.set(NEVER);
+                    return dataOf(received);
+                }
+            }
+            transferEnd.set(NEVER);
+            return DISCONNECTED_DATA;
+        }
+
+        /**
+         * Retourne, pour une Gameboy attendant un transfert sur horloge externe,
+         * le cycle auquel l'octet du maître lui a été livré, s'il l'a été, et
+         * sinon le premier cycle auquel un transfert du maître pourrait se
+         * terminer: la fin de son transfert en cours, ou la durée d'un transfert
+         * après le cycle qu'il a atteint.
+         */
+        long horizon() {
+            if (!connected)
+                return NEVER;
+            // Lus dans l'ordre inverse de celui dans lequel le maître les écrit,
+            // pour qu'une livraison ne puisse échapper à la lecture
+            long peerProgress = peer.progress.get();
+            long peerTransferEnd = peer.transferEnd.get();
+            long received = delivered.get();
+            if (received != NONE)
+                return cycleOf(received);
+            return Math.min(peerTransferEnd, peerProgress + SerialPort.TRANSFER_CYCLES);
+        }
+
+        // Retourne l'octet livré par le maître au plus tard au cycle donné, ou
+        // une valeur négative s'il n'y en a pas
+        int pollDelivered(long cycle) {
+            long received = delivered.get();
+            if (received == NONE || cycleOf(received) > cycle)
+                return (int) NONE;
+            delivered.set(NONE);
+            return dataOf(received);
+        }
+
+        // Vrai si un octet a été livré au cycle donné
+        boolean isDeliveredAt(long cycle) {
+            long received = delivered.get();
+            return received != NONE && cycleOf(received) == cycle;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package ch.epfl.gameboj.component.serial;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.bits.Bit;
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.Clocked;
+import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Snapshottable;
+import ch.epfl.gameboj.component.cpu.Cpu;
+import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
+
+/**
+ * Cette classe modélise le port série de la Gameboy: l'octet du registre SB est
+ * échangé, bit par bit, avec celui de la Gameboy à l'autre bout du câble, puis
+ * l'interruption SERIAL est levée.
+ *
+ * Le transfert est cadencé soit par l'horloge interne (à 8192 Hz), soit par
+ * celle de l'autre Gameboy. Sans câble, un transfert sur horloge interne reçoit
+ * 0xFF, et un transfert sur horloge externe ne se termine jamais.
+ *
+ * Chaque octet envoyé est en outre écrit dans un flot de sortie facultatif, ce
+ * qui permet par exemple de lire ce qu'une cartouche de test y imprime.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class SerialPort implements Component, Clocked, Snapshottable {
+
+    // Un bit est transféré tous les 128 cycles avec l'horloge interne
+    static final int TRANSFER_CYCLES = Byte.SIZE * (int) (GameBoy.CYCLES_PER_SECOND / 8192);
+    private static final int DISCONNECTED_DATA = 0xFF;
+    private static final int SC_READ_MASK = 0b0111_1110;
+    private static final long NO_TRANSFER = Long.MAX_VALUE;
+
+    private enum SC implements Bit {
+        INTERNAL_CLOCK, UNUSED_1, UNUSED_2, UNUSED_3, UNUSED_4, UNUSED_5, UNUSED_6, TRANSFER
+    }
+
+    private final Cpu cpu;
+
+    private int regSB = 0;
+    private int regSC = 0;
+    // Le cycle de la fin du transfert sur horloge interne en cours, s'il y en a un
+    private long transferEndCycle = NO_TRANSFER;
+    private long currentCycle;
+
+    private SerialLink.End link;
+    private OutputStream output;
+
+    /**
+     * Construit un port série qui lève ses interruptions sur le processeur donné.
+     *
+     * @param cpu
+     *            le processeur
+     * @throws NullPointerException
+     *             si le processeur est nul
+     */
+    public SerialPort(Cpu cpu) {
+        this.cpu = Objects.requireNonNull(cpu);
+    }
+
+    /**
+     * Donne le flot dans lequel chaque octet envoyé est écrit, à la fin de son
+     * transfert, ou null pour ne plus en écrire.
+     *
+     * @param output
+     *            le flot de sortie, ou null
+     */
+    public void setOutput(OutputStream output) {
+        this.output = output;
+    }
+
+    // Appelée par SerialLink.connect
+    void connect(SerialLink.End link) {
+        Preconditions.checkArgument(this.link == null || !this.link.isConnected());
+        this.link = link;
+        link.advance(currentCycle);
+        publishTransfer();
+    }
+
+    /**
+     * Termine le transfert sur horloge interne s'il se termine lors de ce cycle,
+     * ou celui sur horloge externe si l'autre Gameboy l'a effectué lors de ce
+     * cycle.
+     */
+    @Override
+    public void cycle(long cycle) {
+        currentCycle = cycle;
+        if (link != null) {
+            link.advance(cycle);
+        }
+
+        if (cycle >= transferEndCycle) {
+            int received = link != null ? link.exchange(regSB, cycle) : DISCONNECTED_DATA;
+            completeTransfer(regSB, received);
+        } else if (link != null && isWaitingForExternalClock()) {
+            int received = link.pollDelivered(cycle);
+            if (received >= 0) {
+                completeTransfer(regSB, received);
+            }
+        }
+    }
+
+    /**
+     * Retourne le cycle de la fin du transfert sur horloge interne en cours, ou,
+     * pendant un transfert sur horloge externe avec un câble, le premier cycle
+     * auquel l'autre Gameboy pourrait le terminer.
+     *
+     * @param cycle
+     *            le cycle actuel
+     * @return le cycle du prochain événement du port
+     */
+    @Override
+    public long nextEventCycle(long cycle) {
+        long next = transferEndCycle;
+        if (link != null && isWaitingForExternalClock()) {
+            next = Math.min(next, link.horizon());
+        }
+        return Math.max(cycle, next);
+    }
+
+    /**
+     * Indique si la Gameboy peut exécuter le cycle donné sans connaître l'état de
+     * celle à l'autre bout du câble, c'est-à-dire si ce n'est ni la fin d'un
+     * transfert sur horloge interne que l'autre Gameboy n'a pas encore atteinte,
+     * ni un cycle auquel elle pourrait terminer le transfert sur horloge externe
+     * en cours. Sans câble, c'est toujours le cas.
+     *
+     * @param cycle
+     *            le cycle à exécuter
+     * @return vrai si le cycle peut être exécuté, faux si la Gameboy doit
+     *         attendre que l'autre avance
+     */
+    public boolean canRun(long cycle) {
+        if (link == null)
+            return true;
+        if (cycle >= transferEndCycle)
+            return link.peerReached(transferEndCycle);
+        return !isWaitingForExternalClock() || cycle < link.horizon() || link.isDeliveredAt(cycle);
+    }
+
+    /**
+     * Indique au port que la Gameboy a atteint le cycle donné, ce qui permet à
+     * l'autre Gameboy du câble de ne pas l'attendre plus longtemps. Cette méthode
+     * est appelée à la fin de chaque exécution.
+     *
+     * @param cycle
+     *            le cycle atteint
+     */
+    public void reach(long cycle) {
+        if (link != null) {
+            link.advance(cycle);
+        }
+    }
+
+    @Override
+    public int read(int address) {
+        switch (Preconditions.checkBits16(address)) {
+        case AddressMap.REG_SB:
+            return regSB;
+        case AddressMap.REG_SC:
+            return regSC | SC_READ_MASK;
+        default:
+            return NO_DATA;
+        }
+    }
+
+    @Override
+    public void write(int address, int data) {
+        Preconditions.checkBits8(data);
+        switch (Preconditions.checkBits16(address)) {
+        case AddressMap.REG_SB:
+            regSB = data;
+            break;
+        case AddressMap.REG_SC:
+            regSC = data & ~SC_READ_MASK;
+            startTransfer();
+            break;
+        default:
+            break;
+        }
+    }
+
+    @Override
+    public boolean isMappedToPage(int page) {
+        return Component.pageIntersects(page, AddressMap.REG_SB, AddressMap.REG_SC + 1);
+    }
+
+    private boolean isWaitingForExternalClock() {
+        return Bits.test(regSC, SC.TRANSFER) && !Bits.test(regSC, SC.INTERNAL_CLOCK);
+    }
+
+    private void startTransfer() {
+        boolean transfer = Bits.test(regSC, SC.TRANSFER);
+        boolean internal = Bits.test(regSC, SC.INTERNAL_CLOCK);
+        transferEndCycle = transfer && internal ? currentCycle + TRANSFER_CYCLES : NO_TRANSFER;
+        if (link != null) {
+            publishTransfer();
+        }
+    }
+
+    // Publie sur le câble le transfert en cours, sur horloge interne ou externe
+    private void publishTransfer() {
+        link.startTransfer(transferEndCycle);
+        if (isWaitingForExternalClock()) {
+            link.post(regSB, currentCycle);
+        } else {
+            link.cancel();
+        }
+    }
+
+    private void completeTransfer(int sent, int received) {
+        regSB = received;
+        regSC = Bits.set(regSC, SC.TRANSFER.index(), false);
+        transferEndCycle = NO_TRANSFER;
+        cpu.requestInterrupt(Interrupt.SERIAL);
+
+        if (output != null) {
+            try {
+                output.write(sent);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Copie l'état (registres et transfert en cours) du port série donné. Le câble
+     * et le flot de sortie ne sont pas copiés.
+     *
+     * @param other
+     *            le port série dont l'état est copié
+     */
+    public void copyStateFrom(SerialPort other) {
+        regSB = other.regSB;
+        regSC = other.regSC;
+        transferEndCycle = other.transferEndCycle;
+        currentCycle = other.currentCycle;
+    }
+
+    /**
+     * L'état du port série est ses deux registres, la fin du transfert en cours et
+     * le dernier cycle pris en compte.
+     *
+     * @return la taille de l'état sauvegardé
+     */
+    @Override
+    public int stateSize() {
+        return 2 + 2 * Long.BYTES;
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) regSB);
+        buffer.put((byte) regSC);
+        buffer.putLong(transferEndCycle);
+        buffer.putLong(currentCycle);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        regSB = Byte.toUnsignedInt(buffer.get());
+        regSC = Byte.toUnsignedInt(buffer.get()) & ~SC_READ_MASK;
+        transferEndCycle = buffer.getLong();
+        currentCycle = buffer.getLong();
+
+        if (link != null) {
+            publishTransfer();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * This package contains the serial port of the Gameboy, and the link cable
+ * which connects the serial ports of two Gameboy instances of the same process.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+package ch.epfl.gameboj.component.serial;
@@ -0,0 +1,774 @@
+package ch.epfl.gameboj.component.sound;
+
+import static ch.epfl.gameboj.AddressMap.REGS_NR_END;
+import static ch.epfl.gameboj.AddressMap.REGS_NR_START;
+import static ch.epfl.gameboj.AddressMap.REG_NR50;
+import static ch.epfl.gameboj.AddressMap.REG_NR51;
+import static ch.epfl.gameboj.AddressMap.REG_NR52;
+import static ch.epfl.gameboj.AddressMap.WAVE_RAM_END;
+import static ch.epfl.gameboj.AddressMap.WAVE_RAM_SIZE;
+import static ch.epfl.gameboj.AddressMap.WAVE_RAM_START;
+
+import java.nio.ByteBuffer;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.Clocked;
+import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Snapshottable;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * Cette classe modélise l'unité de traitement audio (APU) de la Gameboy et ses
+ * quatre canaux: deux canaux à onde carrée (le premier avec balayage de
+ * fréquence), un canal lisant une forme d'onde en mémoire et un canal de bruit.
+ *
+ * Comme le timer, l'unité ne travaille pas à chaque cycle: elle rattrape d'un
+ * coup les cycles écoulés lorsque l'un de ses registres est accédé, et, si un
+ * récepteur d'échantillons lui est donné, une fois par image, en produisant
+ * alors tous les échantillons de l'image en un lot. Sans récepteur, seul le
+ * séquenceur (longueurs, balayage et enveloppes) est rattrapé, de sorte que
+ * l'émulation sans son ne paie presque rien.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class Apu implements Component, Clocked, Snapshottable {
+
+    /**
+     * La fréquence d'échantillonnage, en Hz, des échantillons produits.
+     */
+    public static final int SAMPLE_RATE = 44100;
+    /**
+     * Le nombre de canaux (stéréo) des échantillons produits.
+     */
+    public static final int OUTPUT_CHANNELS = 2;
+
+    // Le séquenceur cadence longueurs, balayage et enveloppes à 512 Hz
+    private static final int SEQUENCER_PERIOD = 2048, SEQUENCER_STEPS = 8;
+    private static final int ENVELOPE_STEP = 7;
+    // Les périodes des canaux sont exprimées en cycles de l'horloge à 4 MHz
+    private static final int CLOCKS_PER_CYCLE = 4;
+    // Les échantillons sont transmis au récepteur par lots d'une image
+    private static final int BATCH_CYCLES = LcdController.IMAGE_CYCLE_DURATION;
+    private static final int BATCH_SIZE = OUTPUT_CHANNELS
+            * (int) (BATCH_CYCLES * (long) SAMPLE_RATE / GameBoy.CYCLES_PER_SECOND + 2);
+    // Chaque canal produit entre -15 et 15, multiplié par le volume général (au
+    // plus 8): le facteur d'échelle amène la somme des quatre à environ 94% de la
+    // plage des échantillons de 16 bits
+    private static final int OUTPUT_SCALE = 64;
+    // Le filtre passe-haut de la sortie (le condensateur de la Gameboy), qui
+    // supprime la composante continue des canaux allumés mais silencieux
+    private static final double HIGH_PASS_FACTOR = Math.pow(0.999958,
+            CLOCKS_PER_CYCLE * GameBoy.CYCLES_PER_SECOND / (double) SAMPLE_RATE);
+
+    private static final int REGS_SIZE = REGS_NR_END - REGS_NR_START;
+    private static final int REGS_PER_CHANNEL = 5;
+    private static final int NR51_INDEX = REG_NR51 - REGS_NR_START, NR50_INDEX = REG_NR50 - REGS_NR_START,
+            NR52_INDEX = REG_NR52 - REGS_NR_START;
+    private static final int NR52_POWER = 7;
+    // Les bits des registres qui valent toujours 1 à la lecture; NR50 et NR51 se
+    // relisent entièrement, ce dont dépendent les jeux qui ne les réécrivent que
+    // si leur valeur change
+    private static final int[] READ_MASKS = { 0x80, 0x3F, 0x00, 0xFF, 0xBF, 0xFF, 0x3F, 0x00, 0xFF, 0xBF, 0x7F,
+            0xFF, 0x9F, 0xFF, 0xBF, 0xFF, 0xFF, 0x00, 0x00, 0xBF, 0x00, 0x00, 0x70 };
+
+    private static final int MAX_FREQUENCY = 2047, MAX_VOLUME = 15;
+    // Les formes d'onde des canaux carrés, pour chaque rapport cyclique
+    private static final int[] DUTY_PATTERNS = { 0b00000001, 0b10000001, 0b10000111, 0b01111110 };
+    // Les décalages appliqués aux échantillons du canal d'onde, pour chaque volume
+    private static final int[] WAVE_VOLUME_SHIFTS = { 4, 0, 1, 2 };
+
+    private final int[] regs = new int[REGS_SIZE];
+    private final byte[] waveRam = new byte[WAVE_RAM_SIZE];
+
+    private final SquareChannel channel1 = new SquareChannel(0, true);
+    private final SquareChannel channel2 = new SquareChannel(1, false);
+    private final WaveChannel channel3 = new WaveChannel(2);
+    private final NoiseChannel channel4 = new NoiseChannel(3);
+    private final Channel[] channels = { channel1, channel2, channel3, channel4 };
+
+    // Le cycle actuel de la Gameboy, et le dernier cycle rattrapé par l'unité
+    private long currentCycle;
+    private long lastCycle;
+
+    private SampleSink sink;
+    private final short[] batch = new short[BATCH_SIZE];
+    private int batchLength;
+    private long nextBatchCycle = Long.MAX_VALUE;
+    // L'index (depuis l'allumage) du prochain échantillon, et le cycle auquel il
+    // est produit
+    private long sampleIndex;
+    private long nextSampleCycle;
+    private double leftCapacitor, rightCapacitor;
+
+    /**
+     * Donne à l'unité le récepteur de ses échantillons, ou null pour qu'elle n'en
+     * produise plus. Les échantillons déjà produits sont d'abord transmis à
+     * l'ancien récepteur.
+     *
+     * @param sink
+     *            le récepteur des échantillons, ou null
+     */
+    public void setSink(SampleSink sink) {
+        flush();
+        this.sink = sink;
+        resynchronizeSamples();
+    }
+
+    /**
+     * Transmet immédiatement au récepteur les échantillons produits jusqu'au
+     * dernier cycle de la Gameboy, sans attendre la fin du lot.
+     */
+    public void flush() {
+        if (sink != null) {
+            catchUp(currentCycle);
+            sink.write(batch, 0, batchLength);
+        }
+        batchLength = 0;
+    }
+
+    @Override
+    public void cycle(long cycle) {
+        currentCycle = cycle;
+        if (cycle >= nextBatchCycle) {
+            catchUp(cycle);
+            sink.write(batch, 0, batchLength);
+            batchLength = 0;
+            nextBatchCycle = (cycle / BATCH_CYCLES + 1) * BATCH_CYCLES;
+        }
+    }
+
+    /**
+     * Retourne le cycle de la fin du lot d'échantillons actuel, ou jamais si
+     * l'unité n'a pas de récepteur.
+     *
+     * @param cycle
+     *            le cycle actuel
+     * @return le cycle auquel le lot actuel est transmis au récepteur
+     */
+    @Override
+    public long nextEventCycle(long cycle) {
+        return Math.max(cycle, nextBatchCycle);
+    }
+
+    @Override
+    public int read(int address) {
+        Preconditions.checkBits16(address);
+        if (address >= WAVE_RAM_START && address < WAVE_RAM_END) {
+            return Byte.toUnsignedInt(waveRam[address - WAVE_RAM_START]);
+        }
+        if (address < REGS_NR_START || address >= REGS_NR_END) {
+            return NO_DATA;
+        }
+
+        int index = address - REGS_NR_START;
+        if (index == NR52_INDEX) {
+            // L'état des canaux dépend des compteurs de longueur
+            catchUp(currentCycle);
+            int status = regs[NR52_INDEX];
+            for (int i = 0; i < channels.length; ++i) {
+                status = Bits.set(status, i, channels[i].enabled);
+            }
+            return status | READ_MASKS[index];
+        }
+        return regs[index] | READ_MASKS[index];
+    }
+
+    @Override
+    public void write(int address, int data) {
+        Preconditions.checkBits8(data);
+        Preconditions.checkBits16(address);
+        if (address >= WAVE_RAM_START && address < WAVE_RAM_END) {
+            catchUp(currentCycle);
+            waveRam[address - WAVE_RAM_START] = (byte) data;
+            return;
+        }
+        int index = address - REGS_NR_START;
+        if (index < 0 || index >= REGS_SIZE || (!isPowered() && index != NR52_INDEX)) {
+            return;
+        }
+
+        catchUp(currentCycle);
+        if (index == NR52_INDEX) {
+            regs[NR52_INDEX] = data & (1 << NR52_POWER);
+            if (!isPowered()) {
+                powerOff();
+            }
+        } else if (index < channels.length * REGS_PER_CHANNEL) {
+            regs[index] = data;
+            channels[index / REGS_PER_CHANNEL].write(index % REGS_PER_CHANNEL, data);
+        } else {
+            regs[index] = data;
+        }
+    }
+
+    @Override
+    public boolean isMappedToPage(int page) {
+        return Component.pageIntersects(page, REGS_NR_START, WAVE_RAM_END);
+    }
+
+    private boolean isPowered() {
+        return Bits.test(regs[NR52_INDEX], NR52_POWER);
+    }
+
+    // Eteindre l'unité efface tous ses registres, sauf la mémoire d'onde
+    private void powerOff() {
+        for (int i = 0; i < NR52_INDEX; ++i) {
+            regs[i] = 0;
+        }
+        for (Channel c : channels) {
+            c.enabled = false;
+        }
+    }
+
+    /**
+     * Fait avancer l'unité jusqu'au cycle donné, en produisant les échantillons
+     * qui tombent entre-temps s'il y a un récepteur.
+     */
+    private void catchUp(long cycle) {
+        boolean sampling = sink != null;
+        while (lastCycle < cycle) {
+            long nextTick = (lastCycle / SEQUENCER_PERIOD + 1) * SEQUENCER_PERIOD;
+            long next = Math.min(cycle, nextTick);
+            if (sampling) {
+                next = Math.min(next, nextSampleCycle);
+                int clocks = (int) (next - lastCycle) * CLOCKS_PER_CYCLE;
+                for (Channel c : channels) {
+                    c.advance(clocks);
+                }
+            }
+            lastCycle = next;
+
+            if (next == nextTick && isPowered()) {
+                clockSequencer((int) (next / SEQUENCER_PERIOD % SEQUENCER_STEPS));
+            }
+            if (sampling && next == nextSampleCycle) {
+                emitSample();
+            }
+        }
+    }
+
+    private void clockSequencer(int step) {
+        if (step % 2 == 0) {
+            for (Channel c : channels) {
+                c.clockLength();
+            }
+        }
+        if (step == 2 || step == 6) {
+            channel1.clockSweep();
+        }
+        if (step == ENVELOPE_STEP) {
+            for (Channel c : channels) {
+                c.clockEnvelope();
+            }
+        }
+    }
+
+    private void emitSample() {
+        int left = 0, right = 0;
+        int nr51 = regs[NR51_INDEX];
+        for (int i = 0; i < channels.length; ++i) {
+            Channel c = channels[i];
+            if (c.enabled) {
+                int value = 2 * c.output() - MAX_VOLUME;
+                if (Bits.test(nr51, i + channels.length)) {
+                    left += value;
+                }
+                if (Bits.test(nr51, i)) {
+                    right += value;
+                }
+            }
+        }
+        int nr50 = regs[NR50_INDEX];
+        left *= (Bits.extract(nr50, 4, 3) + 1) * OUTPUT_SCALE;
+        right *= (Bits.clip(3, nr50) + 1) * OUTPUT_SCALE;
+
+        double filteredLeft = left - leftCapacitor;
+        leftCapacitor = left - filteredLeft * HIGH_PASS_FACTOR;
+        double filteredRight = right - rightCapacitor;
+        rightCapacitor = right - filteredRight * HIGH_PASS_FACTOR;
+
+        if (batchLength == batch.length) {
+            sink.write(batch, 0, batchLength);
+            batchLength = 0;
+        }
+        batch[batchLength++] = toSample(filteredLeft);
+        batch[batchLength++] = toSample(filteredRight);
+
+        ++sampleIndex;
+        nextSampleCycle = sampleCycle(sampleIndex);
+    }
+
+    private static short toSample(double value) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+    }
+
+    // Recalcule le prochain échantillon et la fin du lot à partir du dernier cycle
+    // rattrapé, après un changement de récepteur ou d'état
+    private void resynchronizeSamples() {
+        if (sink == null) {
+            nextBatchCycle = Long.MAX_VALUE;
+        } else {
+            sampleIndex = (lastCycle * SAMPLE_RATE + GameBoy.CYCLES_PER_SECOND - 1) / GameBoy.CYCLES_PER_SECOND;
+            nextSampleCycle = sampleCycle(sampleIndex);
+            nextBatchCycle = (lastCycle / BATCH_CYCLES + 1) * BATCH_CYCLES;
+        }
+    }
+
+    private static long sampleCycle(long index) {
+        return index * GameBoy.CYCLES_PER_SECOND / SAMPLE_RATE;
+    }
+
+    /**
+     * Copie l'état (registres, mémoire d'onde et canaux) de l'unité donnée. Le
+     * récepteur des échantillons n'est pas copié.
+     *
+     * @param other
+     *            l'unité dont l'état est copié
+     */
+    public void copyStateFrom(Apu other) {
+        System.arraycopy(other.regs, 0, regs, 0, regs.length);
+        System.arraycopy(other.waveRam, 0, waveRam, 0, waveRam.length);
+        for (int i = 0; i < channels.length; ++i) {
+            channels[i].copyStateFrom(other.channels[i]);
+        }
+        currentCycle = other.currentCycle;
+        lastCycle = other.lastCycle;
+        resynchronizeSamples();
+    }
+
+    /**
+     * L'état de l'unité est ses registres, sa mémoire d'onde, l'état interne de
+     * ses canaux et les derniers cycles pris en compte.
+     *
+     * @return la taille de l'état sauvegardé
+     */
+    @Override
+    public int stateSize() {
+        int size = REGS_SIZE + WAVE_RAM_SIZE + 2 * Long.BYTES;
+        for (Channel c : channels) {
+            size += c.stateSize();
+        }
+        return size;
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        for (int r : regs) {
+            buffer.put((byte) r);
+        }
+        buffer.put(waveRam);
+        for (Channel c : channels) {
+            c.saveState(buffer);
+        }
+        buffer.putLong(currentCycle);
+        buffer.putLong(lastCycle);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        for (int i = 0; i < regs.length; ++i) {
+            regs[i] = Byte.toUnsignedInt(buffer.get());
+        }
+        buffer.get(waveRam);
+        for (Channel c : channels) {
+            c.loadState(buffer);
+        }
+        currentCycle = buffer.getLong();
+        lastCycle = buffer.getLong();
+        resynchronizeSamples();
+    }
+
+    /**
+     * Un canal: ses cinq registres (NRx0 à NRx4) et son compteur de longueur, ainsi
+     * que l'enveloppe de volume des canaux qui en ont une.
+     */
+    private abstract class Channel {
+        private final int regsOffset;
+        private final int maxLength;
+
+        boolean enabled;
+        int lengthCounter;
+        int volume;
+        int envelopeTimer;
+        // Le nombre de cycles à 4 MHz avant le prochain pas de la forme d'onde
+        int timer;
+
+        Channel(int index, int maxLength) {
+            this.regsOffset = index * REGS_PER_CHANNEL;
+            this.maxLength = maxLength;
+        }
+
+        final int reg(int index) {
+            return regs[regsOffset + index];
+        }
+
+        final int frequency() {
+            return reg(3) | Bits.clip(3, reg(4)) << Byte.SIZE;
+        }
+
+        // Par défaut, le convertisseur est allumé si le volume initial ou la
+        // direction de l'enveloppe n'est pas nul
+        boolean isDacOn() {
+            return Bits.extract(reg(2), 3, 5) != 0;
+        }
+
+        void write(int index, int data) {
+            switch (index) {
+            case 1:
+                lengthCounter = maxLength - (data & (maxLength - 1));
+                break;
+            case 2:
+            case 0:
+                if (!isDacOn()) {
+                    enabled = false;
+                }
+                break;
+            case 4:
+                if (Bits.test(data, 7)) {
+                    trigger();
+                }
+                break;
+            default:
+                break;
+            }
+        }
+
+        void trigger() {
+            enabled = isDacOn();
+            if (lengthCounter == 0) {
+                lengthCounter = maxLength;
+            }
+            timer = period();
+            volume = Bits.extract(reg(2), 4, 4);
+            envelopeTimer = Bits.clip(3, reg(2));
+        }
+
+        final void clockLength() {
+            if (Bits.test(reg(4), 6) && lengthCounter > 0 && --lengthCounter == 0) {
+                enabled = false;
+            }
+        }
+
+        void clockEnvelope() {
+            int period = Bits.clip(3, reg(2));
+            if (period == 0 || --envelopeTimer > 0) {
+                return;
+            }
+            envelopeTimer = period;
+            if (Bits.test(reg(2), 3)) {
+                volume = Math.min(volume + 1, MAX_VOLUME);
+            } else {
+                volume = Math.max(volume - 1, 0);
+            }
+        }
+
+        // Fait avancer la forme d'onde du nombre de cycles à 4 MHz donné
+        final void advance(int clocks) {
+            if (!enabled) {
+                return;
+            }
+            timer -= clocks;
+            if (timer <= 0) {
+                int period = period();
+                int steps = -timer / period + 1;
+                timer += steps * period;
+                step(steps);
+            }
+        }
+
+        // La période de la forme d'onde, en cycles à 4 MHz
+        abstract int period();
+
+        // Avance la forme d'onde du nombre de pas donné
+        abstract void step(int steps);
+
+        // La valeur actuelle de la forme d'onde, entre 0 et 15
+        abstract int output();
+
+        void copyStateFrom(Channel other) {
+            enabled = other.enabled;
+            lengthCounter = other.lengthCounter;
+            volume = other.volume;
+            envelopeTimer = other.envelopeTimer;
+            timer = other.timer;
+        }
+
+        int stateSize() {
+            return 3 + Short.BYTES + Integer.BYTES;
+        }
+
+        void saveState(ByteBuffer buffer) {
+            buffer.put((byte) (enabled ? 1 : 0));
+            buffer.putShort((short) lengthCounter);
+            buffer.put((byte) volume);
+            buffer.put((byte) envelopeTimer);
+            buffer.putInt(timer);
+        }
+
+        void loadState(ByteBuffer buffer) {
+            enabled = buffer.get() != 0;
+            lengthCounter = Short.toUnsignedInt(buffer.getShort());
+            volume = Byte.toUnsignedInt(buffer.get());
+            envelopeTimer = Byte.toUnsignedInt(buffer.get());
+            timer = buffer.getInt();
+        }
+    }
+
+    /**
+     * Un canal à onde carrée, avec balayage de fréquence pour le premier.
+     */
+    private final class SquareChannel extends Channel {
+        private final boolean hasSweep;
+
+        private int dutyPosition;
+        private boolean sweepEnabled;
+        private int sweepTimer;
+        private int shadowFrequency;
+
+        SquareChannel(int index, boolean hasSweep) {
+            super(index, 64);
+            this.hasSweep = hasSweep;
+        }
+
+        @Override
+        void trigger() {
+            super.trigger();
+            if (hasSweep) {
+                shadowFrequency = frequency();
+                sweepTimer = sweepPeriod();
+                sweepEnabled = Bits.extract(reg(0), 4, 3) != 0 || sweepShift() != 0;
+                if (sweepShift() != 0) {
+                    sweptFrequency();
+                }
+            }
+        }
+
+        void clockSweep() {
+            if (!enabled || --sweepTimer > 0) {
+                return;
+            }
+            sweepTimer = sweepPeriod();
+            if (sweepEnabled && Bits.extract(reg(0), 4, 3) != 0) {
+                int frequency = sweptFrequency();
+                if (frequency <= MAX_FREQUENCY && sweepShift() != 0) {
+                    shadowFrequency = frequency;
+                    regs[3] = Bits.clip(Byte.SIZE, frequency);
+                    regs[4] = regs[4] & ~0b111 | frequency >> Byte.SIZE;
+                    sweptFrequency();
+                }
+            }
+        }
+
+        // Une période de balayage nulle compte comme 8
+        private int sweepPeriod() {
+            int period = Bits.extract(reg(0), 4, 3);
+            return period == 0 ? 8 : period;
+        }
+
+        private int sweepShift() {
+            return Bits.clip(3, reg(0));
+        }
+
+        // Calcule la prochaine fréquence du balayage, et éteint le canal si elle
+        // dépasse la fréquence maximale
+        private int sweptFrequency() {
+            int delta = shadowFrequency >> sweepShift();
+            int frequency = Bits.test(reg(0), 3) ? shadowFrequency - delta : shadowFrequency + delta;
+            if (frequency > MAX_FREQUENCY) {
+                enabled = false;
+            }
+            return frequency;
+        }
+
+        @Override
+        int period() {
+            return (MAX_FREQUENCY + 1 - frequency()) * 4;
+        }
+
+        @Override
+        void step(int steps) {
+            dutyPosition = (dutyPosition + steps) & 0b111;
+        }
+
+        @Override
+        int output() {
+            int pattern = DUTY_PATTERNS[Bits.extract(reg(1), 6, 2)];
+            return Bits.test(pattern, 7 - dutyPosition) ? volume : 0;
+        }
+
+        @Override
+        void copyStateFrom(Channel other) {
+            super.copyStateFrom(other);
+            SquareChannel that = (SquareChannel) other;
+            dutyPosition = that.dutyPosition;
+            sweepEnabled = that.sweepEnabled;
+            sweepTimer = that.sweepTimer;
+            shadowFrequency = that.shadowFrequency;
+        }
+
+        @Override
+        int stateSize() {
+            return super.stateSize() + 3 + Short.BYTES;
+        }
+
+        @Override
+        void saveState(ByteBuffer buffer) {
+            super.saveState(buffer);
+            buffer.put((byte) dutyPosition);
+            buffer.put((byte) (sweepEnabled ? 1 : 0));
+            buffer.put((byte) sweepTimer);
+            buffer.putShort((short) shadowFrequency);
+        }
+
+        @Override
+        void loadState(ByteBuffer buffer) {
+            super.loadState(buffer);
+            dutyPosition = Bits.clip(3, buffer.get());
+            sweepEnabled = buffer.get() != 0;
+            sweepTimer = Byte.toUnsignedInt(buffer.get());
+            shadowFrequency = Short.toUnsignedInt(buffer.getShort());
+        }
+    }
+
+    /**
+     * Le canal qui lit les 32 échantillons de 4 bits de la mémoire d'onde.
+     */
+    private final class WaveChannel extends Channel {
+        private int position;
+
+        WaveChannel(int index) {
+            super(index, 256);
+        }
+
+        @Override
+        boolean isDacOn() {
+            return Bits.test(reg(0), 7);
+        }
+
+        @Override
+        void trigger() {
+            super.trigger();
+            position = 0;
+        }
+
+        // Le canal d'onde n'a pas d'enveloppe, son volume est donné par NR32
+        @Override
+        void clockEnvelope() {
+        }
+
+        @Override
+        int period() {
+            return (MAX_FREQUENCY + 1 - frequency()) * 2;
+        }
+
+        @Override
+        void step(int steps) {
+            position = (position + steps) & 0b11111;
+        }
+
+        @Override
+        int output() {
+            int sample = waveRam[position / 2];
+            sample = position % 2 == 0 ? Bits.extract(sample, 4, 4) : Bits.clip(4, sample);
+            return sample >> WAVE_VOLUME_SHIFTS[Bits.extract(reg(2), 5, 2)];
+        }
+
+        @Override
+        void copyStateFrom(Channel other) {
+            super.copyStateFrom(other);
+            position = ((WaveChannel) other).position;
+        }
+
+        @Override
+        int stateSize() {
+            return super.stateSize() + 1;
+        }
+
+        @Override
+        void saveState(ByteBuffer buffer) {
+            super.saveState(buffer);
+            buffer.put((byte) position);
+        }
+
+        @Override
+        void loadState(ByteBuffer buffer) {
+            super.loadState(buffer);
+            position = Bits.clip(5, buffer.get());
+        }
+    }
+
+    /**
+     * Le canal de bruit, produit par un registre à décalage à rétroaction linéaire
+     * de 15 (ou 7) bits.
+     */
+    private final class NoiseChannel extends Channel {
+        private static final int LFSR_WIDTH = 15, SHORT_LFSR_WIDTH = 7;
+        // Avec ces décalages de l'horloge, le registre n'avance plus
+        private static final int MAX_CLOCK_SHIFT = 13;
+
+        private int lfsr;
+
+        NoiseChannel(int index) {
+            super(index, 64);
+        }
+
+        @Override
+        void trigger() {
+            super.trigger();
+            lfsr = (1 << LFSR_WIDTH) - 1;
+        }
+
+        @Override
+        int period() {
+            int divisor = Bits.clip(3, reg(3));
+            return (divisor == 0 ? 8 : 16 * divisor) << Bits.extract(reg(3), 4, 4);
+        }
+
+        @Override
+        void step(int steps) {
+            if (Bits.extract(reg(3), 4, 4) > MAX_CLOCK_SHIFT) {
+                return;
+            }
+            boolean shortMode = Bits.test(reg(3), 3);
+            for (int i = 0; i < steps; ++i) {
+                int feedback = (lfsr ^ lfsr >> 1) & 1;
+                lfsr = lfsr >> 1 | feedback << (LFSR_WIDTH - 1);
+                if (shortMode) {
+                    lfsr = Bits.set(lfsr, SHORT_LFSR_WIDTH - 1, feedback != 0);
+                }
+            }
+        }
+
+        @Override
+        int output() {
+            return Bits.test(lfsr, 0) ? 0 : volume;
+        }
+
+        @Override
+        void copyStateFrom(Channel other) {
+            super.copyStateFrom(other);
+            lfsr = ((NoiseChannel) other).lfsr;
+        }
+
+        @Override
+        int stateSize() {
+            return super.stateSize() + Short.BYTES;
+        }
+
+        @Override
+        void saveState(ByteBuffer buffer) {
+            super.saveState(buffer);
+            buffer.putShort((short) lfsr);
+        }
+
+        @Override
+        void loadState(ByteBuffer buffer) {
+            super.loadState(buffer);
+            lfsr = Short.toUnsignedInt(buffer.getShort());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ch.epfl.gameboj.component.sound;
+
+/**
+ * Cette interface désigne le récepteur des échantillons produits par l'unité de
+ * traitement audio: des échantillons signés de 16 bits, stéréo, entrelacés
+ * (gauche puis droite), à la fréquence {@link Apu#SAMPLE_RATE}.
+ *
+ * Les échantillons sont transmis par lots, depuis le fil de l'émulation.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+@FunctionalInterface
+public interface SampleSink {
+
+    /**
+     * Reçoit un lot d'échantillons. Le tableau est réutilisé par l'unité de
+     * traitement audio après l'appel, son contenu doit donc être copié s'il est
+     * conservé.
+     *
+     * @param samples
+     *            le tableau contenant les échantillons
+     * @param offset
+     *            l'index du premier échantillon du lot
+     * @param length
+     *            le nombre d'échantillons du lot, toujours pair
+     */
+    void write(short[] samples, int offset, int length);
+}
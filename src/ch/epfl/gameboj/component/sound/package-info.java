@@ -0,0 +1,9 @@
+/**
+ * This package contains the audio processing unit of the Gameboy, which
+ * generates the samples of its four sound channels.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+package ch.epfl.gameboj.component.sound;
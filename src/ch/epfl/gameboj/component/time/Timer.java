@@ -1,5 +1,6 @@
 package ch.epfl.gameboj.component.time;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import ch.epfl.gameboj.AddressMap;
@@ -8,6 +9,7 @@ import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Snapshottable;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
 
@@ -19,7 +21,7 @@ import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
  * @author David Cian (287967)
  *
  */
-public final class Timer implements Component, Clocked {
+public final class Timer implements Component, Clocked, Snapshottable {
     private static final int maxSecondaryCounter = 0xFF, unitsPerCycle = 4;
 
     private final Cpu cpu;
@@ -31,6 +33,8 @@ public final class Timer implements Component, Clocked {
     private int regTMA = 0; 
     //Timer control register
     private int regTAC = 0;
+    // Le dernier cycle pris en compte dans regDIV
+    private long lastCycle = -1;
     
     //00: 1024, 01: 16, 10: 64, 11: 256 (controls the div register, it represents frequency)
     private enum TAC implements Bit { CLK_SEL_0, CLK_SEL_1, TM_ENABLE, UNUSED3, UNUSED4, UNUSED5, UNUSED6, UNUSED7 }
@@ -50,14 +54,46 @@ public final class Timer implements Component, Clocked {
     }
 
     /**
-     * Cette méthode actualise les compteurs.
+     * Cette méthode actualise les compteurs jusqu'au cycle donné, en rattrapant
+     * d'un coup les cycles écoulés depuis le dernier appel: le compteur principal
+     * avance de 4 unités par cycle, et le compteur secondaire d'autant d'unités que
+     * le bit sélectionné du compteur principal a eu de fronts descendants.
      *
      * @param cycle
      *            Le cycle actuel de la Gameboy
      */
     @Override
     public void cycle(long cycle) {
-        change(() -> regDIV = Bits.clip(16, regDIV + unitsPerCycle));
+        long elapsedUnits = unitsPerCycle * (cycle - lastCycle);
+        lastCycle = cycle;
+
+        if (isEnabled()) {
+            long edgePeriod = edgePeriod();
+            incrementTIMA((regDIV + elapsedUnits) / edgePeriod - regDIV / edgePeriod);
+        }
+        regDIV = (int) ((regDIV + elapsedUnits) & 0xFFFF);
+    }
+
+    /**
+     * Cette méthode retourne le prochain cycle lors duquel le timer lève une
+     * interruption, c'est-à-dire celui du front descendant qui fait déborder le
+     * compteur secondaire (jamais s'il est désactivé).
+     *
+     * @param cycle
+     *            le cycle actuel
+     * @return le cycle du prochain débordement du compteur secondaire
+     */
+    @Override
+    public long nextEventCycle(long cycle) {
+        if (!isEnabled()) {
+            return Long.MAX_VALUE;
+        }
+
+        long edgePeriod = edgePeriod();
+        long cyclesPerEdge = edgePeriod / unitsPerCycle;
+        long firstEdgeCycle = lastCycle + (edgePeriod - regDIV % edgePeriod) / unitsPerCycle;
+        long overflowCycle = firstEdgeCycle + (maxSecondaryCounter - regTIMA) * cyclesPerEdge;
+        return Math.max(cycle, overflowCycle);
     }
 
     /**
@@ -123,27 +159,37 @@ public final class Timer implements Component, Clocked {
         }
     }
 
-    private boolean state() {
-        int divBitIndex = 0;
+    @Override
+    public boolean isMappedToPage(int page) {
+        return Component.pageIntersects(page, AddressMap.REG_DIV, AddressMap.REG_TAC + 1);
+    }
+
+    private boolean isEnabled() {
+        return Bits.test(regTAC, TAC.TM_ENABLE);
+    }
 
+    // L'index du bit du compteur principal dont les fronts descendants incrémentent
+    // le compteur secondaire
+    private int divBitIndex() {
         switch (Bits.clip(2, regTAC)) {
             case 0:
-                divBitIndex = 9;
-                break;
+                return 9;
             case 1:
-                divBitIndex = 3;
-                break;
+                return 3;
             case 2:
-                divBitIndex = 5;
-                break;
-            case 3:
-                divBitIndex = 7;
-                break;
+                return 5;
             default:
-                break;
+                return 7;
         }
+    }
 
-        return Bits.test(regTAC, 2) && Bits.test(regDIV, divBitIndex);
+    // Le nombre d'unités du compteur principal entre deux fronts descendants
+    private long edgePeriod() {
+        return 1L << (divBitIndex() + 1);
+    }
+
+    private boolean state() {
+        return isEnabled() && Bits.test(regDIV, divBitIndex());
     }
 
     private void change(Runnable r) {
@@ -154,10 +200,63 @@ public final class Timer implements Component, Clocked {
 
     private void incIfChange(boolean previousState) {
         if (previousState && !state()) {
-            if (regTIMA++ == maxSecondaryCounter) {
+            incrementTIMA(1);
+        }
+    }
+
+    private void incrementTIMA(long increments) {
+        while (increments > 0) {
+            // Le compteur secondaire déborde au plus une fois par appel à cycle, lors du
+            // cycle retourné par nextEventCycle
+            long step = Math.min(increments, maxSecondaryCounter + 1 - regTIMA);
+            regTIMA += step;
+            increments -= step;
+            if (regTIMA > maxSecondaryCounter) {
                 cpu.requestInterrupt(Interrupt.TIMER);
                 regTIMA = regTMA;
             }
         }
     }
+
+    /**
+     * Copie l'état (registres et dernier cycle pris en compte) du timer donné.
+     *
+     * @param other
+     *            le timer dont l'état est copié
+     */
+    public void copyStateFrom(Timer other) {
+        regDIV = other.regDIV;
+        regTIMA = other.regTIMA;
+        regTMA = other.regTMA;
+        regTAC = other.regTAC;
+        lastCycle = other.lastCycle;
+    }
+
+    /**
+     * L'état du timer est ses quatre registres et le dernier cycle pris en compte.
+     *
+     * @return la taille de l'état sauvegardé
+     */
+    @Override
+    public int stateSize() {
+        return Short.BYTES + 3 + Long.BYTES;
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putShort((short) regDIV);
+        buffer.put((byte) regTIMA);
+        buffer.put((byte) regTMA);
+        buffer.put((byte) regTAC);
+        buffer.putLong(lastCycle);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        regDIV = Short.toUnsignedInt(buffer.getShort());
+        regTIMA = Byte.toUnsignedInt(buffer.get());
+        regTMA = Byte.toUnsignedInt(buffer.get());
+        regTAC = Byte.toUnsignedInt(buffer.get());
+        lastCycle = buffer.getLong();
+    }
 }
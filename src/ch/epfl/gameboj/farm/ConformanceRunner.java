@@ -0,0 +1,226 @@
+package ch.epfl.gameboj.farm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+/**
+ * Cette classe exécute, sans interface graphique et en parallèle, des
+ * cartouches de test (comme celles de Blargg) qui impriment leur résultat sur
+ * le port série: chaque cartouche a sa propre Gameboy, dont la sortie série est
+ * capturée, jusqu'à ce qu'elle imprime "Passed" ou "Failed", ou que le budget
+ * de cycles soit épuisé.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class ConformanceRunner {
+
+    /**
+     * Cette énumération représente l'issue d'un test.
+     */
+    public enum Status {
+        PASSED, FAILED, TIMED_OUT, ERROR
+    }
+
+    private static final String PASSED = "Passed", FAILED = "Failed";
+    // La sortie est examinée après chaque tranche de cycles de cette taille
+    private static final long CHUNK_CYCLES = 1 << 16;
+    private static final long DEFAULT_BUDGET_SECONDS = 60;
+    private static final String DEFAULT_DIRECTORY = "ROM files/Blargg tests";
+
+    private ConformanceRunner() {
+    }
+
+    /**
+     * Le résultat d'un test: son issue, ce que la cartouche a imprimé, le nombre
+     * de cycles émulés et le temps écoulé.
+     */
+    public static final class TestResult {
+        private final File romFile;
+        private final Status status;
+        private final String output;
+        private final long cycles;
+        private final long elapsedNanos;
+
+        TestResult(File romFile, Status status, String output, long cycles, long elapsedNanos) {
+            this.romFile = romFile;
+            this.status = status;
+            this.output = output;
+            this.cycles = cycles;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public File romFile() {
+            return romFile;
+        }
+
+        public Status status() {
+            return status;
+        }
+
+        public String output() {
+            return output;
+        }
+
+        public long cycles() {
+            return cycles;
+        }
+
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-28s %-9s %6.1f s emulated %6d ms", romFile.getName(), status,
+                    cycles / (double) GameBoy.CYCLES_PER_SECOND, elapsedNanos / 1_000_000);
+        }
+    }
+
+    /**
+     * Exécute une cartouche de test dans le fil appelant.
+     *
+     * @param romFile
+     *            le fichier ROM de la cartouche
+     * @param cycleBudget
+     *            le nombre maximal de cycles à émuler
+     * @return le résultat du test
+     * @throws IOException
+     *             si le fichier ROM ne peut être lu
+     * @throws IllegalArgumentException
+     *             si le budget n'est pas strictement positif
+     */
+    public static TestResult run(File romFile, long cycleBudget) throws IOException {
+        Preconditions.checkArgument(cycleBudget > 0);
+        long start = System.nanoTime();
+
+        GameBoy gameBoy = new GameBoy(Cartridge.ofFile(romFile));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        gameBoy.getSerialPort().setOutput(output);
+
+        Status status = Status.TIMED_OUT;
+        int examinedSize = 0;
+        while (status == Status.TIMED_OUT && gameBoy.getCycles() < cycleBudget) {
+            gameBoy.runUntil(Math.min(gameBoy.getCycles() + CHUNK_CYCLES, cycleBudget));
+            if (output.size() != examinedSize) {
+                examinedSize = output.size();
+                status = statusOf(output.toString(StandardCharsets.US_ASCII.name()));
+            }
+        }
+
+        return new TestResult(romFile, status, output.toString(StandardCharsets.US_ASCII.name()),
+                gameBoy.getCycles(), System.nanoTime() - start);
+    }
+
+    // L'issue est connue dès que la ligne contenant "Passed" ou "Failed" est
+    // terminée
+    private static Status statusOf(String output) {
+        int passed = output.indexOf(PASSED);
+        int failed = output.indexOf(FAILED);
+        int verdict = passed < 0 ? failed : failed < 0 ? passed : Math.min(passed, failed);
+        if (verdict < 0 || output.indexOf('\n', verdict) < 0)
+            return Status.TIMED_OUT;
+        return verdict == passed ? Status.PASSED : Status.FAILED;
+    }
+
+    /**
+     * Exécute les cartouches de test données en parallèle, une par fil, et attend
+     * qu'elles soient toutes terminées.
+     *
+     * @param romFiles
+     *            les fichiers ROM des cartouches
+     * @param cycleBudget
+     *            le nombre maximal de cycles à émuler par cartouche
+     * @param threads
+     *            le nombre de fils
+     * @return les résultats des tests, dans l'ordre des cartouches données; une
+     *         cartouche qui ne peut être chargée ou exécutée a l'issue ERROR
+     * @throws InterruptedException
+     *             si le fil appelant est interrompu pendant l'attente
+     * @throws IllegalArgumentException
+     *             si le budget ou le nombre de fils n'est pas strictement positif
+     */
+    public static List<TestResult> runAll(List<File> romFiles, long cycleBudget, int threads)
+            throws InterruptedException {
+        Preconditions.checkArgument(cycleBudget > 0 && threads > 0);
+        List<Callable<TestResult>> tasks = new ArrayList<>(romFiles.size());
+        for (File romFile : romFiles) {
+            Objects.requireNonNull(romFile);
+            tasks.add(() -> runOrReport(romFile, cycleBudget));
+        }
+
+        return Pools.invokeAll(Executors.newFixedThreadPool(threads), tasks, RuntimeException.class);
+    }
+
+    // Un test dont la cartouche est illisible ou invalide ne doit pas empêcher
+    // l'exécution des autres
+    private static TestResult runOrReport(File romFile, long cycleBudget) {
+        long start = System.nanoTime();
+        try {
+            return run(romFile, cycleBudget);
+        } catch (IOException | RuntimeException e) {
+            return new TestResult(romFile, Status.ERROR, e.toString(), 0, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Point d'entrée exécutant toutes les cartouches (.gb) d'un dossier, en
+     * parallèle sur un fil par processeur, puis affichant l'issue et la durée de
+     * chaque test. Le programme se termine avec le code 1 si un test n'a pas
+     * réussi, ce qui permet de l'utiliser pour valider chaque modification.
+     *
+     * Arguments (facultatifs): le dossier des cartouches ("ROM files/Blargg tests"
+     * par défaut), puis le budget en secondes émulées par cartouche (60 par
+     * défaut).
+     *
+     * @param args
+     *            les arguments de lancement
+     * @throws InterruptedException
+     *             si le fil principal est interrompu
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Preconditions.checkArgument(args.length <= 2, () -> {
+            System.err.println("Usage: ConformanceRunner [directory] [seconds]");
+            System.exit(1);
+        });
+
+        File directory = new File(args.length >= 1 ? args[0] : DEFAULT_DIRECTORY);
+        long budgetSeconds = args.length == 2 ? Long.parseLong(args[1]) : DEFAULT_BUDGET_SECONDS;
+        File[] romFiles = directory.listFiles((dir, name) -> name.endsWith(".gb"));
+        if (romFiles == null || romFiles.length == 0) {
+            System.err.println("No .gb file in " + directory);
+            System.exit(1);
+        }
+        Arrays.sort(romFiles);
+
+        long start = System.nanoTime();
+        List<TestResult> results = runAll(Arrays.asList(romFiles), budgetSeconds * GameBoy.CYCLES_PER_SECOND,
+                Runtime.getRuntime().availableProcessors());
+        long elapsed = System.nanoTime() - start;
+
+        int passed = 0;
+        for (TestResult result : results) {
+            System.out.println(result);
+            if (result.status() == Status.PASSED) {
+                ++passed;
+            } else {
+                System.out.println("    " + result.output().trim().replace("\n", "\n    "));
+            }
+        }
+        System.out.printf("%d/%d passed in %d ms%n", passed, results.size(), elapsed / 1_000_000);
+        System.exit(passed == results.size() ? 0 : 1);
+    }
+}
@@ -0,0 +1,31 @@
+package ch.epfl.gameboj.farm;
+
+import ch.epfl.gameboj.component.Joypad;
+
+/**
+ * Cette interface modélise un script d'entrée, qui décide des touches appuyées
+ * et relâchées sur le Joypad d'une Gameboy émulée sans interface.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+@FunctionalInterface
+public interface InputScript {
+
+    /**
+     * Le script qui n'appuie jamais sur aucune touche.
+     */
+    public static final InputScript NONE = (frame, joypad) -> {
+    };
+
+    /**
+     * Applique le script juste avant l'émulation d'une image.
+     *
+     * @param frame
+     *            l'index (à partir de 0) de l'image qui va être émulée
+     * @param joypad
+     *            le Joypad de la Gameboy
+     */
+    void apply(int frame, Joypad joypad);
+}
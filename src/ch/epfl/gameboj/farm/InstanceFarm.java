@@ -0,0 +1,294 @@
+package ch.epfl.gameboj.farm;
+
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_HEIGHT;
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_WIDTH;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * Cette classe modélise une ferme d'instances, qui exécute en parallèle des
+ * émulations indépendantes, chacune avec sa propre Gameboy, sans interface
+ * graphique.
+ *
+ * Les émulations sont réparties soit sur un nombre fixe de fils, soit sur un
+ * ensemble de fils qui se volent le travail (fork/join), soit sur un fil
+ * virtuel par émulation, lorsque la JVM en dispose (Java 21 et plus). Les deux
+ * premiers modes sont disponibles sur toutes les JVM.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class InstanceFarm {
+
+    /**
+     * Cette énumération représente les manières de répartir les émulations sur
+     * les fils d'exécution: FIXED_POOL soumet une tâche par émulation à un nombre
+     * fixe de fils, FORK_JOIN divise récursivement la liste des émulations entre
+     * les fils d'un ForkJoinPool, et VIRTUAL_THREADS crée un fil virtuel par
+     * émulation.
+     */
+    public enum Mode {
+        FIXED_POOL, FORK_JOIN, VIRTUAL_THREADS
+    }
+
+    // La méthode Executors.newVirtualThreadPerTaskExecutor, ou null si la JVM n'a
+    // pas de fils virtuels
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = virtualThreadExecutorFactory();
+
+    private final Mode mode;
+    private final int poolSize;
+
+    /**
+     * Construit une ferme d'instances répartissant les émulations de la manière
+     * donnée.
+     *
+     * @param mode
+     *            la manière de répartir les émulations
+     * @param poolSize
+     *            le nombre de fils des modes FIXED_POOL et FORK_JOIN (ignoré
+     *            par le mode VIRTUAL_THREADS, qui crée un fil par émulation)
+     * @throws NullPointerException
+     *             si le mode est nul
+     * @throws IllegalArgumentException
+     *             si le nombre de fils n'est pas strictement positif
+     * @throws UnsupportedOperationException
+     *             si le mode VIRTUAL_THREADS est demandé et que la JVM n'a pas de
+     *             fils virtuels
+     */
+    public InstanceFarm(Mode mode, int poolSize) {
+        Preconditions.checkArgument(poolSize > 0);
+        if (Objects.requireNonNull(mode) == Mode.VIRTUAL_THREADS && !supportsVirtualThreads())
+            throw new UnsupportedOperationException("Virtual threads are not available on this JVM");
+        this.mode = mode;
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Construit une ferme d'instances répartissant les émulations de la manière
+     * donnée, les modes FIXED_POOL et FORK_JOIN utilisant un fil par
+     * processeur.
+     *
+     * @param mode
+     *            la manière de répartir les émulations
+     * @throws NullPointerException
+     *             si le mode est nul
+     * @throws UnsupportedOperationException
+     *             si le mode VIRTUAL_THREADS est demandé et que la JVM n'a pas de
+     *             fils virtuels
+     */
+    public InstanceFarm(Mode mode) {
+        this(mode, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Indique si la JVM dispose de fils virtuels.
+     *
+     * @return true si le mode VIRTUAL_THREADS est disponible
+     */
+    public static boolean supportsVirtualThreads() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Exécute les émulations données en parallèle et attend qu'elles soient toutes
+     * terminées.
+     *
+     * @param jobs
+     *            les émulations à exécuter
+     * @return les résultats des émulations, dans l'ordre des émulations données
+     * @throws IOException
+     *             si le fichier ROM d'une émulation ne peut être lu
+     * @throws InterruptedException
+     *             si le fil appelant est interrompu pendant l'attente
+     */
+    public List<Result> run(List<Job> jobs) throws IOException, InterruptedException {
+        List<Callable<Result>> tasks = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            Objects.requireNonNull(job);
+            tasks.add(() -> runJob(job));
+        }
+
+        if (mode == Mode.FORK_JOIN) {
+            return runForkJoin(jobs);
+        }
+        return Pools.invokeAll(newExecutor(), tasks, IOException.class);
+    }
+
+    /**
+     * Exécute une émulation dans le fil appelant.
+     *
+     * @param job
+     *            l'émulation à exécuter
+     * @return le résultat de l'émulation
+     * @throws IOException
+     *             si le fichier ROM de l'émulation ne peut être lu
+     */
+    public static Result runJob(Job job) throws IOException {
+        long start = System.nanoTime();
+
+        GameBoy gameBoy = new GameBoy(Cartridge.ofFile(job.romFile()));
+        Joypad joypad = gameBoy.getJoypad();
+        for (int frame = 0; frame < job.frames(); ++frame) {
+            job.script().apply(frame, joypad);
+            gameBoy.runUntil((frame + 1L) * LcdController.IMAGE_CYCLE_DURATION);
+        }
+
+        byte[] lastFrame = new byte[LCD_WIDTH * LCD_HEIGHT];
+        gameBoy.getLcdController().copyCurrentFrame(lastFrame);
+        return new Result(job, lastFrame, System.nanoTime() - start);
+    }
+
+    private List<Result> runForkJoin(List<Job> jobs) throws IOException, InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(poolSize);
+        try {
+            return Collections.unmodifiableList(Pools.resultOf(pool.submit(new JobsTask(jobs)), IOException.class));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Une tâche fork/join exécutant une liste d'émulations: la liste est divisée
+     * en deux jusqu'à ne contenir qu'une émulation, et les fils inoccupés du
+     * ForkJoinPool volent les moitiés qui n'ont pas encore été commencées.
+     */
+    private static final class JobsTask extends RecursiveTask<List<Result>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Job> jobs;
+
+        JobsTask(List<Job> jobs) {
+            this.jobs = jobs;
+        }
+
+        @Override
+        protected List<Result> compute() {
+            if (jobs.size() <= 1) {
+                List<Result> results = new ArrayList<>(jobs.size());
+                for (Job job : jobs) {
+                    try {
+                        results.add(runJob(job));
+                    } catch (IOException e) {
+                        // Une tâche fork/join ne peut lever d'exception vérifiée
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return results;
+            }
+
+            int middle = jobs.size() / 2;
+            JobsTask first = new JobsTask(jobs.subList(0, middle));
+            first.fork();
+            List<Result> results = new ArrayList<>(jobs.size());
+            List<Result> second = new JobsTask(jobs.subList(middle, jobs.size())).compute();
+            results.addAll(first.join());
+            results.addAll(second);
+            return results;
+        }
+    }
+
+    private ExecutorService newExecutor() {
+        if (mode == Mode.FIXED_POOL) {
+            return Executors.newFixedThreadPool(poolSize);
+        }
+
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+        } catch (InvocationTargetException e) {
+            throw new UnsupportedOperationException("Virtual threads are not available on this JVM", e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new UnsupportedOperationException("Virtual threads are not available on this JVM", e);
+        }
+    }
+
+    private static Method virtualThreadExecutorFactory() {
+        // Les fils virtuels sont recherchés par réflexion, le projet devant compiler
+        // pour des versions de Java qui n'en ont pas
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Point d'entrée permettant de comparer les modes: émule chaque cartouche
+     * donnée le nombre d'images donné, une fois par processeur, dans chaque mode
+     * disponible. Toutes les émulations sont d'abord exécutées une fois sans
+     * mesure, pour que le premier mode mesuré ne paie pas seul la compilation à
+     * la volée de l'émulateur.
+     *
+     * Arguments: nombre d'images, puis un ou plusieurs fichiers ROM.
+     *
+     * @param args
+     *            les arguments de lancement
+     * @throws IOException
+     *             si un fichier ROM ne peut être lu
+     * @throws InterruptedException
+     *             si le fil principal est interrompu
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Preconditions.checkArgument(args.length >= 2, () -> {
+            System.err.println("Usage: InstanceFarm <frames> <rom>...");
+            System.exit(1);
+        });
+
+        int frames = Integer.parseInt(args[0]);
+        int instancesPerRom = Runtime.getRuntime().availableProcessors();
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 1; i < args.length; ++i) {
+            for (int j = 0; j < instancesPerRom; ++j) {
+                jobs.add(new Job(new File(args[i]), frames));
+            }
+        }
+
+        new InstanceFarm(Mode.FIXED_POOL).run(jobs);
+
+        for (Mode mode : Mode.values()) {
+            if (mode == Mode.VIRTUAL_THREADS && !supportsVirtualThreads()) {
+                System.out.println(mode + ": not available on this JVM");
+                continue;
+            }
+
+            long start = System.nanoTime();
+            List<Result> results = new InstanceFarm(mode).run(jobs);
+            long elapsed = System.nanoTime() - start;
+
+            long totalFrames = 0;
+            for (Result result : results) {
+                totalFrames += result.job().frames();
+            }
+            System.out.printf("%s: %d instances, %d ms, %.0f fps%n", mode, results.size(), elapsed / 1_000_000,
+                    totalFrames * 1e9 / elapsed);
+            for (int i = 0; i < results.size(); i += instancesPerRom) {
+                System.out.println("  " + results.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ch.epfl.gameboj.farm;
+
+import java.io.File;
+import java.util.Objects;
+
+import ch.epfl.gameboj.Preconditions;
+
+/**
+ * Cette classe modélise une émulation à effectuer par une ferme d'instances:
+ * une cartouche, un nombre d'images et un script d'entrée.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class Job {
+
+    private final File romFile;
+    private final int frames;
+    private final InputScript script;
+
+    /**
+     * Construit une émulation de la cartouche donnée, pendant le nombre d'images
+     * donné, avec le script d'entrée donné.
+     *
+     * @param romFile
+     *            le fichier ROM de la cartouche
+     * @param frames
+     *            le nombre d'images à émuler
+     * @param script
+     *            le script d'entrée
+     * @throws NullPointerException
+     *             si le fichier ou le script est nul
+     * @throws IllegalArgumentException
+     *             si le nombre d'images est négatif
+     */
+    public Job(File romFile, int frames, InputScript script) {
+        Preconditions.checkArgument(frames >= 0);
+        this.romFile = Objects.requireNonNull(romFile);
+        this.frames = frames;
+        this.script = Objects.requireNonNull(script);
+    }
+
+    /**
+     * Construit une émulation de la cartouche donnée, pendant le nombre d'images
+     * donné, sans appui sur aucune touche.
+     *
+     * @param romFile
+     *            le fichier ROM de la cartouche
+     * @param frames
+     *            le nombre d'images à émuler
+     * @throws NullPointerException
+     *             si le fichier est nul
+     * @throws IllegalArgumentException
+     *             si le nombre d'images est négatif
+     */
+    public Job(File romFile, int frames) {
+        this(romFile, frames, InputScript.NONE);
+    }
+
+    public File romFile() {
+        return romFile;
+    }
+
+    public int frames() {
+        return frames;
+    }
+
+    public InputScript script() {
+        return script;
+    }
+
+    @Override
+    public String toString() {
+        return romFile.getName() + " (" + frames + " frames)";
+    }
+}
@@ -0,0 +1,90 @@
+package ch.epfl.gameboj.farm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Cette classe utilitaire exécute des tâches sur un ensemble de fils et en
+ * rassemble les résultats, pour la ferme d'instances et l'exécution des
+ * cartouches de test.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+final class Pools {
+
+    private Pools() {
+    }
+
+    /**
+     * Exécute les tâches données au moyen de l'exécuteur donné, attend qu'elles
+     * soient toutes terminées, puis arrête l'exécuteur.
+     *
+     * L'exception levée par une tâche est propagée telle quelle si elle est du
+     * type vérifié donné, une exception non vérifiée ou une erreur.
+     *
+     * @param executor
+     *            l'exécuteur, arrêté au retour
+     * @param tasks
+     *            les tâches à exécuter
+     * @param checkedException
+     *            le type des exceptions vérifiées que les tâches peuvent lever
+     * @return les résultats des tâches, dans l'ordre des tâches données
+     * @throws X
+     *             si une tâche lève une exception de ce type
+     * @throws InterruptedException
+     *             si le fil appelant est interrompu pendant l'attente
+     * @throws IllegalStateException
+     *             si une tâche lève une autre exception vérifiée
+     */
+    static <T, X extends Exception> List<T> invokeAll(ExecutorService executor, List<? extends Callable<T>> tasks,
+            Class<X> checkedException) throws X, InterruptedException {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(resultOf(future, checkedException));
+            }
+            return Collections.unmodifiableList(results);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Attend le résultat de la tâche donnée, en propageant l'exception qu'elle
+     * lève comme invokeAll.
+     *
+     * @param future
+     *            la tâche
+     * @param checkedException
+     *            le type des exceptions vérifiées que la tâche peut lever
+     * @return le résultat de la tâche
+     * @throws X
+     *             si la tâche lève une exception de ce type
+     * @throws InterruptedException
+     *             si le fil appelant est interrompu pendant l'attente
+     * @throws IllegalStateException
+     *             si la tâche lève une autre exception vérifiée
+     */
+    static <T, X extends Exception> T resultOf(Future<T> future, Class<X> checkedException)
+            throws X, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (checkedException.isInstance(cause))
+                throw checkedException.cast(cause);
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ch.epfl.gameboj.farm;
+
+import java.util.Objects;
+
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * Cette classe modélise le résultat d'une émulation effectuée par une ferme
+ * d'instances: la dernière image, son empreinte et le débit de l'instance.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class Result {
+
+    private final Job job;
+    private final byte[] frame;
+    private final long elapsedNanos;
+
+    Result(Job job, byte[] frame, long elapsedNanos) {
+        this.job = Objects.requireNonNull(job);
+        this.frame = Objects.requireNonNull(frame);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Job job() {
+        return job;
+    }
+
+    /**
+     * Retourne la dernière image émulée, sous la forme d'un index de couleur (0 à
+     * 3) par pixel, ligne après ligne.
+     *
+     * @return une copie de la dernière image
+     */
+    public byte[] frame() {
+        return frame.clone();
+    }
+
+    public long frameHash() {
+        return LcdController.frameHash(frame);
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Retourne le débit de l'instance, en images émulées par seconde.
+     *
+     * @return le nombre d'images émulées par seconde
+     */
+    public double framesPerSecond() {
+        return elapsedNanos == 0 ? 0 : job.frames() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %016x, %.0f fps", job, frameHash(), framesPerSecond());
+    }
+}
@@ -0,0 +1,252 @@
+package ch.epfl.gameboj.farm;
+
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_HEIGHT;
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_WIDTH;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.Phaser;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * Cette classe modélise un environnement vectorisé d'apprentissage par
+ * renforcement: K Gameboy, exécutant la même cartouche, avancent ensemble d'un
+ * pas à la fois, chacune avec sa propre action.
+ *
+ * Une action est un masque de touches, le bit d'index k valant 1 si la touche
+ * Joypad.Key d'ordinal k est appuyée. Une action est maintenue pendant toutes
+ * les images d'un pas (saut d'images), et l'écran retourné peut être le maximum,
+ * pixel par pixel, des deux dernières images du pas.
+ *
+ * Les instances sont réparties en tranches entre le fil appelant et des fils de
+ * travail créés une fois pour toutes, et aucun objet n'est alloué par pas.
+ * L'environnement doit être fermé une fois utilisé. Il ne doit être utilisé que
+ * depuis un seul fil.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class VectorEnvironment implements AutoCloseable {
+
+    private static final int SCREEN_SIZE = LCD_WIDTH * LCD_HEIGHT;
+    private static final int KEY_COUNT = Key.values().length;
+    private static final Key[] KEYS = Key.values();
+
+    // La Gameboy dans son état initial, jamais exécutée, dont chaque instance
+    // remise à zéro est une copie
+    private final GameBoy pristine;
+    private final boolean maxPooling;
+    private final GameBoy[] gameBoys;
+    // Le nombre d'images émulées par chaque instance depuis sa création
+    private final long[] frameCounts;
+    // Les actions en cours de chaque instance, et celles du pas en cours
+    private final int[] currentActions, stepActions;
+    private final byte[][] screens;
+    // Les avant-dernières images du pas, pour le maximum des deux dernières
+    private final byte[][] previousScreens;
+
+    // Les fils de travail et le fil appelant se synchronisent deux fois par pas:
+    // au début et à la fin du pas
+    private final Phaser phaser;
+    private final Thread[] workers;
+    private final int sliceLength;
+    private int stepFrames;
+    private volatile Throwable workerFailure;
+
+    /**
+     * Construit un environnement de K instances de la cartouche donnée.
+     *
+     * @param romFile
+     *            le fichier ROM de la cartouche
+     * @param instances
+     *            le nombre K d'instances
+     * @param threads
+     *            le nombre de fils (y compris le fil appelant) sur lesquels les
+     *            instances sont réparties
+     * @param maxPooling
+     *            vrai si l'écran d'un pas doit être le maximum de ses deux
+     *            dernières images, faux s'il doit être sa dernière image
+     * @throws IOException
+     *             si le fichier ROM ne peut être lu
+     * @throws IllegalArgumentException
+     *             si le nombre d'instances ou de fils n'est pas strictement positif
+     */
+    public VectorEnvironment(File romFile, int instances, int threads, boolean maxPooling) throws IOException {
+        Preconditions.checkArgument(instances > 0 && threads > 0);
+        pristine = new GameBoy(Cartridge.ofFile(romFile));
+        this.maxPooling = maxPooling;
+
+        gameBoys = new GameBoy[instances];
+        frameCounts = new long[instances];
+        currentActions = new int[instances];
+        stepActions = new int[instances];
+        screens = new byte[instances][SCREEN_SIZE];
+        previousScreens = maxPooling ? new byte[instances][SCREEN_SIZE] : null;
+        for (int i = 0; i < instances; ++i) {
+            reset(i);
+        }
+
+        int threadCount = Math.min(threads, instances);
+        sliceLength = (instances + threadCount - 1) / threadCount;
+        phaser = new Phaser(threadCount);
+        workers = new Thread[threadCount - 1];
+        for (int w = 0; w < workers.length; ++w) {
+            int slice = w + 1;
+            workers[w] = new Thread(() -> work(slice), "gameboj-env-" + slice);
+            workers[w].setDaemon(true);
+            workers[w].start();
+        }
+    }
+
+    /**
+     * Retourne le nombre K d'instances.
+     *
+     * @return le nombre d'instances
+     */
+    public int size() {
+        return gameBoys.length;
+    }
+
+    /**
+     * Remet une instance dans son état initial, avec une nouvelle Gameboy copiée
+     * de celle construite avec l'environnement: le fichier ROM n'est pas relu.
+     *
+     * @param instance
+     *            l'index de l'instance
+     * @return l'écran de l'instance, tout blanc
+     * @throws IndexOutOfBoundsException
+     *             si l'index n'est pas valide
+     */
+    public byte[] reset(int instance) {
+        Objects.checkIndex(instance, gameBoys.length);
+        gameBoys[instance] = pristine.copy();
+        frameCounts[instance] = 0;
+        currentActions[instance] = 0;
+        gameBoys[instance].getLcdController().copyCurrentFrame(screens[instance]);
+        return screens[instance];
+    }
+
+    /**
+     * Fait avancer toutes les instances d'un pas, chacune maintenant son action
+     * pendant le nombre d'images donné.
+     *
+     * @param actions
+     *            les K actions (masques de touches)
+     * @param frames
+     *            le nombre d'images du pas
+     * @return les K écrans, sous la forme d'un index de couleur (0 à 3) par pixel,
+     *         ligne après ligne; le même tableau est réécrit à chaque pas
+     * @throws IllegalArgumentException
+     *             si le nombre d'actions n'est pas K, si une action n'est pas un
+     *             masque de touches valide ou si le nombre d'images n'est pas
+     *             strictement positif
+     * @throws IllegalStateException
+     *             si l'environnement est fermé
+     */
+    public byte[][] step(int[] actions, int frames) {
+        Preconditions.checkArgument(actions.length == gameBoys.length && frames > 0);
+        for (int action : actions) {
+            Preconditions.checkArgument(action >>> KEY_COUNT == 0);
+        }
+        if (phaser.isTerminated())
+            throw new IllegalStateException("The environment is closed");
+
+        System.arraycopy(actions, 0, stepActions, 0, actions.length);
+        stepFrames = frames;
+
+        // Démarre le pas, fait la première tranche et attend les autres
+        phaser.arriveAndAwaitAdvance();
+        try {
+            stepSlice(0);
+        } catch (Throwable t) {
+            workerFailure = t;
+        }
+        phaser.arriveAndAwaitAdvance();
+
+        Throwable failure = workerFailure;
+        if (failure != null) {
+            close();
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+            if (failure instanceof Error)
+                throw (Error) failure;
+            throw new IllegalStateException(failure);
+        }
+        return screens;
+    }
+
+    /**
+     * Ferme l'environnement, en arrêtant ses fils de travail.
+     */
+    @Override
+    public void close() {
+        phaser.forceTermination();
+    }
+
+    private void work(int slice) {
+        // Un numéro de phase négatif signifie que l'environnement a été fermé
+        while (phaser.arriveAndAwaitAdvance() >= 0) {
+            try {
+                stepSlice(slice);
+            } catch (Throwable t) {
+                workerFailure = t;
+            }
+            if (phaser.arriveAndAwaitAdvance() < 0) {
+                return;
+            }
+        }
+    }
+
+    private void stepSlice(int slice) {
+        int end = Math.min(gameBoys.length, (slice + 1) * sliceLength);
+        for (int i = slice * sliceLength; i < end; ++i) {
+            stepInstance(i);
+        }
+    }
+
+    private void stepInstance(int i) {
+        GameBoy gameBoy = gameBoys[i];
+        applyAction(gameBoy.getJoypad(), currentActions[i], stepActions[i]);
+        currentActions[i] = stepActions[i];
+
+        LcdController lcdController = gameBoy.getLcdController();
+        for (int f = 0; f < stepFrames; ++f) {
+            gameBoy.runUntil(++frameCounts[i] * LcdController.IMAGE_CYCLE_DURATION);
+            if (maxPooling && f == stepFrames - 2) {
+                lcdController.copyCurrentFrame(previousScreens[i]);
+            }
+        }
+        lcdController.copyCurrentFrame(screens[i]);
+
+        if (maxPooling && stepFrames > 1) {
+            byte[] screen = screens[i], previous = previousScreens[i];
+            for (int p = 0; p < SCREEN_SIZE; ++p) {
+                if (previous[p] > screen[p]) {
+                    screen[p] = previous[p];
+                }
+            }
+        }
+    }
+
+    private static void applyAction(Joypad joypad, int previousAction, int action) {
+        int changed = previousAction ^ action;
+        for (int k = 0; k < KEY_COUNT; ++k) {
+            if (Bits.test(changed, k)) {
+                if (Bits.test(action, k)) {
+                    joypad.keyPressed(KEYS[k]);
+                } else {
+                    joypad.keyReleased(KEYS[k]);
+                }
+            }
+        }
+    }
+}
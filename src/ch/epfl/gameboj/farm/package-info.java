@@ -0,0 +1,9 @@
+/**
+ * This package contains the headless API used to run many independent Gameboy
+ * instances in parallel, without any graphical user interface.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+package ch.epfl.gameboj.farm;
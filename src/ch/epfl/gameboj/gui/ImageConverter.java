@@ -1,43 +1,68 @@
 package ch.epfl.gameboj.gui;
 
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_HEIGHT;
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_WIDTH;
+
+import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.lcd.LcdImage;
 import javafx.scene.image.Image;
-import javafx.scene.image.PixelWriter;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
 
 /**
- * Cette classe utilitaire permet de faire la liaison entre le format LcdImage
- * et Image (de JavaFX).
- * 
+ * Cette classe permet de faire la liaison entre le format LcdImage et Image (de
+ * JavaFX). Un convertisseur réutilise toujours la même image JavaFX, réécrite
+ * en un seul appel à chaque conversion: il ne doit être utilisé que depuis le
+ * fil JavaFX.
+ *
  * @author Christophe Saad (282557)
  * @author David Cian (287967)
  *
  */
 public final class ImageConverter {
 
-	private static int[] JavaFXColor = new int[] {0xFFFFFFFF, 0xFFD3D3D3, 0xFFA9A9A9, 0xFF000000};
-	
+	private static final int[] JavaFXColor = new int[] { 0xFFFFFFFF, 0xFFD3D3D3, 0xFFA9A9A9, 0xFF000000 };
+
+	private final WritableImage wImage = new WritableImage(LCD_WIDTH, LCD_HEIGHT);
+	// Les couleurs ARGB des pixels, ligne après ligne
+	private final int[] argbPixels = new int[LCD_WIDTH * LCD_HEIGHT];
+
 	/**
 	 * Cette méthode permet de convertir une image lcd en image JavaFX
-	 * 
+	 *
 	 * @param lcdImage
-	 *            l'image à convertir
-	 * @return l'image JavaFX
+	 *            l'image à convertir, de LCD_WIDTH x LCD_HEIGHT pixels
+	 * @return l'image JavaFX, la même à chaque appel
+	 * @throws IllegalArgumentException
+	 *             si l'image n'a pas la taille de l'écran
 	 */
-	public static Image convert(LcdImage lcdImage) {
-        WritableImage wImage = new WritableImage(lcdImage.getWidth(), lcdImage.getHeight());
-        PixelWriter pWriter = wImage.getPixelWriter();
-
-        for (int y = 0; y < lcdImage.getHeight(); ++y) {
+	public Image convert(LcdImage lcdImage) {
+		Preconditions.checkArgument(lcdImage.getWidth() == LCD_WIDTH && lcdImage.getHeight() == LCD_HEIGHT);
+		lcdImage.export(JavaFXColor, argbPixels);
+		return writePixels();
+	}
 
-            for (int x = 0; x < lcdImage.getWidth(); ++x) {
-
-                int color = JavaFXColor[lcdImage.get(x, y)];
-
-                pWriter.setArgb(x, y, color);
-            }
-        }
+	/**
+	 * Cette méthode permet de convertir une image lcd, donnée sous la forme d'un
+	 * index de couleur par pixel (ligne après ligne), en image JavaFX
+	 *
+	 * @param frame
+	 *            les index de couleur de l'image à convertir
+	 * @return l'image JavaFX, la même à chaque appel
+	 * @throws IllegalArgumentException
+	 *             si le tableau n'a pas la taille de l'écran
+	 */
+	public Image convert(byte[] frame) {
+		Preconditions.checkArgument(frame.length == argbPixels.length);
+		for (int i = 0; i < argbPixels.length; ++i) {
+			argbPixels[i] = JavaFXColor[frame[i]];
+		}
+		return writePixels();
+	}
 
-        return wImage;
-    }
+	private Image writePixels() {
+		wImage.getPixelWriter().setPixels(0, 0, LCD_WIDTH, LCD_HEIGHT, PixelFormat.getIntArgbInstance(), argbPixels,
+				0, LCD_WIDTH);
+		return wImage;
+	}
 }
@@ -0,0 +1,112 @@
+package ch.epfl.gameboj.gui;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Joypad.Key;
+
+/**
+ * Cette classe modélise une file d'événements du clavier sans verrou, permettant
+ * à un unique producteur (le fil JavaFX) de transmettre les appuis et
+ * relâchements des touches, datés, à un unique consommateur (le fil
+ * d'émulation), qui les applique au Joypad entre deux pas de l'émulation.
+ *
+ * Les événements sont stockés dans un tampon circulaire: le producteur n'écrit
+ * que la queue et le consommateur que la tête, chacun publiant sa position
+ * après avoir écrit ou lu les événements concernés.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class InputQueue {
+
+	/**
+	 * Cette interface désigne le destinataire des événements retirés de la file.
+	 */
+	@FunctionalInterface
+	public interface Consumer {
+		/**
+		 * Traite un événement du clavier.
+		 *
+		 * @param nanoTime
+		 *            l'instant de l'événement, tel que donné par System.nanoTime()
+		 * @param key
+		 *            la touche
+		 * @param pressed
+		 *            vrai s'il s'agit d'un appui, faux d'un relâchement
+		 */
+		void accept(long nanoTime, Key key, boolean pressed);
+	}
+
+	private static final Key[] KEYS = Key.values();
+	// Le code d'un événement: l'ordinal de la touche, et ce bit s'il s'agit d'un
+	// appui
+	private static final int PRESSED = 0b1000;
+
+	private final long[] times;
+	private final byte[] codes;
+	private final int mask;
+
+	// Le nombre total d'événements retirés (la tête) et ajoutés (la queue)
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * Construit une file pouvant contenir le nombre d'événements donné.
+	 *
+	 * @param capacity
+	 *            la capacité de la file, une puissance de deux
+	 * @throws IllegalArgumentException
+	 *             si la capacité n'est pas une puissance de deux strictement
+	 *             positive
+	 */
+	public InputQueue(int capacity) {
+		Preconditions.checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1);
+		times = new long[capacity];
+		codes = new byte[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Ajoute un événement à la file, daté de l'instant actuel. Cette méthode ne
+	 * doit être appelée que par le producteur.
+	 *
+	 * @param key
+	 *            la touche
+	 * @param pressed
+	 *            vrai s'il s'agit d'un appui, faux d'un relâchement
+	 * @return vrai si l'événement a été ajouté, faux si la file est pleine
+	 */
+	public boolean offer(Key key, boolean pressed) {
+		long t = tail.get();
+		if (t - head.get() == times.length) {
+			return false;
+		}
+		int index = (int) t & mask;
+		times[index] = System.nanoTime();
+		codes[index] = (byte) (key.ordinal() | (pressed ? PRESSED : 0));
+		tail.lazySet(t + 1);
+		return true;
+	}
+
+	/**
+	 * Retire tous les événements de la file, dans l'ordre où ils ont été ajoutés,
+	 * et les transmet au destinataire donné. Cette méthode ne doit être appelée
+	 * que par le consommateur.
+	 *
+	 * @param consumer
+	 *            le destinataire des événements
+	 * @return le nombre d'événements retirés
+	 */
+	public int drain(Consumer consumer) {
+		long h = head.get();
+		long t = tail.get();
+		for (long i = h; i < t; ++i) {
+			int index = (int) i & mask;
+			consumer.accept(times[index], KEYS[codes[index] & ~PRESSED], (codes[index] & PRESSED) != 0);
+		}
+		head.lazySet(t);
+		return (int) (t - h);
+	}
+}
@@ -5,20 +5,28 @@ import static ch.epfl.gameboj.component.lcd.LcdController.LCD_HEIGHT;
 import static ch.epfl.gameboj.component.lcd.LcdController.LCD_WIDTH;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.sound.sampled.LineUnavailableException;
 
 import ch.epfl.gameboj.GameBoy;
 import ch.epfl.gameboj.Preconditions;
-import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.audio.LineOutput;
+import ch.epfl.gameboj.audio.SampleRingBuffer;
 import ch.epfl.gameboj.component.Joypad.Key;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.movie.MovieRecorder;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
 
@@ -31,6 +39,20 @@ import javafx.stage.Stage;
  */
 public class Main extends Application {
 	private static GameBoy gameboj;
+	// Les entrées passent par l'enregistreur, qui fait aussi avancer la Gameboy
+	private static MovieRecorder recorder;
+	// Les entrées passent du fil JavaFX au fil d'émulation par cette file
+	private static final int INPUT_QUEUE_CAPACITY = 256;
+	private static final InputQueue input = new InputQueue(INPUT_QUEUE_CAPACITY);
+	private static Thread emulationThread;
+	// Les échantillons passent du fil d'émulation au fil de la sortie audio par ce
+	// tampon, d'environ 0.2 seconde
+	private static final int AUDIO_BUFFER_CAPACITY = 1 << 14;
+	private static LineOutput audioOutput;
+	// Le fichier dans lequel le film des entrées est écrit à la fermeture, ou null
+	private static File movieFile;
+	// Le temps d'attente du fil d'émulation lorsqu'il est en avance sur le temps réel
+	private static final long EMULATION_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
 
 	/**
 	 * Point d'entrée du programme
@@ -45,12 +67,19 @@ public class Main extends Application {
 	@Override
 	public void start(Stage primaryStage) throws IOException, LineUnavailableException, InterruptedException {
 		List<String> cmdArgs = getParameters().getRaw();
-		Preconditions.checkArgument(cmdArgs.size() == 1, () -> System.exit(1));
+		Preconditions.checkArgument(cmdArgs.size() == 1 || cmdArgs.size() == 2, () -> System.exit(1));
 
-		// Le nom du fichier de la cartouche .gb est le premier et dernier argument
+		// Le nom du fichier de la cartouche .gb est le premier argument, le second
+		// (facultatif) est celui du film des entrées à enregistrer
 		String fileName = cmdArgs.get(0);
+		movieFile = cmdArgs.size() == 2 ? new File(cmdArgs.get(1)) : null;
 
 		gameboj = new GameBoy(Cartridge.ofFile(new File(fileName)));
+		recorder = new MovieRecorder(gameboj);
+
+		SampleRingBuffer audioSamples = new SampleRingBuffer(AUDIO_BUFFER_CAPACITY);
+		gameboj.getApu().setSink(audioSamples);
+		audioOutput = new LineOutput(audioSamples);
 
 		// La vue de l'émulation
 		ImageView emulationView = new ImageView();
@@ -62,93 +91,141 @@ public class Main extends Application {
 
 		// La scène (état) principal de la fenêtre
 		Scene mainScene = new Scene(mainPane);
-		setInput(mainScene, gameboj.getJoypad());
+		setInput(mainScene);
 
 		primaryStage.setScene(mainScene);
 		primaryStage.show();
 
-		long start = System.nanoTime();
+		// Les images terminées passent du fil d'émulation au fil JavaFX par un triple
+		// tampon, aucun des deux n'attendant l'autre
+		TripleBuffer<byte[]> frames = new TripleBuffer<>(() -> new byte[LCD_WIDTH * LCD_HEIGHT]);
+
+		emulationThread = new Thread(() -> emulate(frames), "gameboj-emulation");
+		emulationThread.setDaemon(true);
+		emulationThread.start();
 
-		// L'animation de l'écran de l'émulation débute
+		// L'image JavaFX affichée est toujours la même, réécrite par le convertisseur
+		ImageConverter imageConverter = new ImageConverter();
+
+		// L'animation de l'écran affiche la dernière image publiée, s'il y en a une
 		new AnimationTimer() {
 			@Override
 			public void handle(long now) {
-				long elapsed = now - start;
-				long elapsedCycles = (long) (elapsed * CYCLES_PER_NANOSECOND);
+				byte[] frame = frames.poll();
+				if (frame != null) {
+					emulationView.setImage(imageConverter.convert(frame));
+				}
+			}
+		}.start();
+	}
 
-				gameboj.runUntil(elapsedCycles);
+	/**
+	 * Cette méthode fait avancer l'émulation au rythme du temps réel et publie
+	 * l'image du contrôleur LCD après chaque pas, elle est exécutée par le fil
+	 * d'émulation. Avant chaque pas, les entrées en attente sont appliquées, chacune
+	 * au cycle correspondant à son instant.
+	 * 
+	 * @param frames
+	 *            le triple tampon dans lequel publier les images
+	 */
+	private static void emulate(TripleBuffer<byte[]> frames) {
+		LcdController lcdController = gameboj.getLcdController();
+		long start = System.nanoTime();
 
-				emulationView.setImage(ImageConverter.convert(gameboj.getLcdController().currentImage()));
+		InputQueue.Consumer applyInput = (nanoTime, key, pressed) -> {
+			long cycle = (long) ((nanoTime - start) * CYCLES_PER_NANOSECOND);
+			recorder.runUntil(Math.max(cycle, gameboj.getCycles()));
+			if (pressed) {
+				recorder.keyPressed(key);
+			} else {
+				recorder.keyReleased(key);
 			}
-		}.start();
+		};
+
+		while (!Thread.currentThread().isInterrupted()) {
+			input.drain(applyInput);
+			long elapsedCycles = (long) ((System.nanoTime() - start) * CYCLES_PER_NANOSECOND);
+
+			if (elapsedCycles > gameboj.getCycles()) {
+				recorder.runUntil(elapsedCycles);
+				lcdController.copyCurrentFrame(frames.back());
+				frames.publish();
+			} else {
+				LockSupport.parkNanos(EMULATION_PAUSE_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Arrête le fil d'émulation et la sortie audio, puis écrit le film des entrées
+	 * dans le fichier donné au lancement, s'il y en a un.
+	 */
+	@Override
+	public void stop() throws IOException, InterruptedException {
+		emulationThread.interrupt();
+		emulationThread.join();
+		audioOutput.close();
+
+		if (movieFile != null) {
+			try (OutputStream out = new FileOutputStream(movieFile)) {
+				recorder.toMovie().writeTo(out);
+			}
+		}
 	}
 
 	/**
 	 * Cette méthode permet d'initialiser les actions qui répondent aux entrées de
-	 * l'utilisateur (interaction avec les touches).
+	 * l'utilisateur (interaction avec les touches), qui sont transmises au fil
+	 * d'émulation par la file des entrées. Celles qui ne trouvent pas de place dans
+	 * la file sont ignorées.
 	 * 
 	 * @param scene
 	 *            la scène à laquelle donner ces interactions
-	 * @param jp
-	 *            le joypad à utiliser
 	 */
-	private static void setInput(Scene scene, Joypad jp) {
+	private static void setInput(Scene scene) {
 		scene.setOnKeyPressed(e -> {
-			switch (e.getCode()) {
-			case A:
-				jp.keyPressed(Key.A);
-				break;
-			case B:
-				jp.keyPressed(Key.B);
-				break;
-			case S:
-				jp.keyPressed(Key.START);
-				break;
-			case SPACE:
-				jp.keyPressed(Key.SELECT);
-				break;
-			case UP:
-				jp.keyPressed(Key.UP);
-				break;
-			case RIGHT:
-				jp.keyPressed(Key.RIGHT);
-				break;
-			case DOWN:
-				jp.keyPressed(Key.DOWN);
-				break;
-			case LEFT:
-				jp.keyPressed(Key.LEFT);
-				break;
+			Key key = keyOf(e.getCode());
+			if (key != null) {
+				input.offer(key, true);
 			}
 		});
 
 		scene.setOnKeyReleased(e -> {
-			switch (e.getCode()) {
-			case A:
-				jp.keyReleased(Key.A);
-				break;
-			case B:
-				jp.keyReleased(Key.B);
-				break;
-			case S:
-				jp.keyReleased(Key.START);
-				break;
-			case SPACE:
-				jp.keyReleased(Key.SELECT);
-				break;
-			case UP:
-				jp.keyReleased(Key.UP);
-				break;
-			case RIGHT:
-				jp.keyReleased(Key.RIGHT);
-				break;
-			case DOWN:
-				jp.keyReleased(Key.DOWN);
-				break;
-			case LEFT:
-				jp.keyReleased(Key.LEFT);
-				break;
+			Key key = keyOf(e.getCode());
+			if (key != null) {
+				input.offer(key, false);
 			}
 		});
 	}
+
+	/**
+	 * Cette méthode donne la touche du Joypad associée à une touche du clavier.
+	 * 
+	 * @param code
+	 *            la touche du clavier
+	 * @return la touche du Joypad, ou null si la touche du clavier n'est associée à
+	 *         aucune
+	 */
+	private static Key keyOf(KeyCode code) {
+		switch (code) {
+		case A:
+			return Key.A;
+		case B:
+			return Key.B;
+		case S:
+			return Key.START;
+		case SPACE:
+			return Key.SELECT;
+		case UP:
+			return Key.UP;
+		case RIGHT:
+			return Key.RIGHT;
+		case DOWN:
+			return Key.DOWN;
+		case LEFT:
+			return Key.LEFT;
+		default:
+			return null;
+		}
+	}
 }
@@ -0,0 +1,84 @@
+package ch.epfl.gameboj.gui;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Cette classe modélise un triple tampon sans verrou, permettant à un unique
+ * producteur (le fil d'émulation) de publier des images qu'un unique
+ * consommateur (le fil JavaFX) récupère, sans que l'un n'attende jamais
+ * l'autre.
+ *
+ * Le producteur écrit dans son tampon puis l'échange avec le tampon du milieu,
+ * le consommateur échange le sien avec celui du milieu seulement si ce dernier
+ * contient une nouvelle image.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ * @param <T>
+ *            le type des tampons
+ */
+public final class TripleBuffer<T> {
+
+	private static final int INDEX_MASK = 0b11;
+	// Indique que le tampon du milieu contient une image pas encore consommée
+	private static final int FRESH = 0b100;
+
+	private final Object[] buffers = new Object[3];
+	// L'index du tampon du milieu, et le fanion FRESH
+	private final AtomicInteger middle = new AtomicInteger(1);
+	// Les index des tampons du producteur et du consommateur, chacun n'étant lu et
+	// écrit que par son propre fil
+	private int producerIndex = 0;
+	private int consumerIndex = 2;
+
+	/**
+	 * Construit un triple tampon dont les trois tampons sont créés par la fonction
+	 * donnée.
+	 *
+	 * @param factory
+	 *            la fonction créant un tampon
+	 * @throws NullPointerException
+	 *             si la fonction ou l'un des tampons est nul
+	 */
+	public TripleBuffer(Supplier<T> factory) {
+		for (int i = 0; i < buffers.length; ++i) {
+			buffers[i] = Objects.requireNonNull(factory.get());
+		}
+	}
+
+	/**
+	 * Retourne le tampon dans lequel le producteur peut écrire la prochaine image.
+	 *
+	 * @return le tampon du producteur
+	 */
+	@SuppressWarnings("unchecked")
+	public T back() {
+		return (T) buffers[producerIndex];
+	}
+
+	/**
+	 * Publie le tampon du producteur, qui reçoit en échange le tampon du milieu.
+	 */
+	public void publish() {
+		producerIndex = middle.getAndSet(producerIndex | FRESH) & INDEX_MASK;
+	}
+
+	/**
+	 * Retourne la dernière image publiée si elle n'a pas encore été récupérée, null
+	 * sinon. Le tampon retourné reste à la disposition du consommateur jusqu'au
+	 * prochain appel.
+	 *
+	 * @return la dernière image publiée, ou null
+	 */
+	@SuppressWarnings("unchecked")
+	public T poll() {
+		if ((middle.get() & FRESH) == 0) {
+			return null;
+		}
+		consumerIndex = middle.getAndSet(consumerIndex) & INDEX_MASK;
+		return (T) buffers[consumerIndex];
+	}
+}
@@ -0,0 +1,211 @@
+package ch.epfl.gameboj.movie;
+
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_HEIGHT;
+import static ch.epfl.gameboj.component.lcd.LcdController.LCD_WIDTH;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * Cette classe modélise un film d'entrées: la suite des appuis et relâchements
+ * des touches du Joypad depuis l'allumage d'une Gameboy, chacun daté du cycle
+ * exact auquel il a eu lieu, ainsi que l'empreinte de l'image affichée à la fin
+ * de chaque image (tous les LcdController.IMAGE_CYCLE_DURATION cycles).
+ *
+ * Un film est immuable. Son format binaire commence par "GBJM" puis sa version,
+ * les cycles des événements y sont stockés sous la forme de leur différence avec
+ * le précédent, par groupes de 7 bits.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class Movie {
+
+    private static final int MAGIC = 0x47424A4D;
+    public static final int VERSION = 1;
+
+    // Le code d'un événement: l'ordinal de la touche, et ce bit s'il s'agit d'un
+    // appui
+    private static final int PRESSED = 0b1000;
+
+    private final long[] eventCycles;
+    private final byte[] eventCodes;
+    private final long[] frameHashes;
+
+    Movie(long[] eventCycles, byte[] eventCodes, long[] frameHashes) {
+        Preconditions.checkArgument(eventCycles.length == eventCodes.length);
+        this.eventCycles = eventCycles;
+        this.eventCodes = eventCodes;
+        this.frameHashes = frameHashes;
+    }
+
+    /**
+     * Calcule le code d'un événement.
+     *
+     * @param key
+     *            la touche
+     * @param pressed
+     *            vrai s'il s'agit d'un appui, faux d'un relâchement
+     * @return le code de l'événement
+     */
+    static byte eventCode(Key key, boolean pressed) {
+        return (byte) (key.ordinal() | (pressed ? PRESSED : 0));
+    }
+
+    /**
+     * Calcule l'empreinte de l'image actuellement affichée par la Gameboy donnée.
+     *
+     * @param gameBoy
+     *            la Gameboy
+     * @param frame
+     *            un tableau de LCD_WIDTH * LCD_HEIGHT octets, réutilisé
+     * @return l'empreinte de l'image
+     */
+    static long frameHash(GameBoy gameBoy, byte[] frame) {
+        gameBoy.getLcdController().copyCurrentFrame(frame);
+        return LcdController.frameHash(frame);
+    }
+
+    /**
+     * Retourne le cycle de la fin de l'image d'index donné.
+     *
+     * @param frame
+     *            l'index de l'image, à partir de 0
+     * @return le cycle auquel l'empreinte de l'image est calculée
+     */
+    static long frameEndCycle(int frame) {
+        return (frame + 1L) * LcdController.IMAGE_CYCLE_DURATION;
+    }
+
+    static byte[] newFrame() {
+        return new byte[LCD_WIDTH * LCD_HEIGHT];
+    }
+
+    public int eventCount() {
+        return eventCycles.length;
+    }
+
+    public long eventCycle(int index) {
+        return eventCycles[index];
+    }
+
+    public Key eventKey(int index) {
+        return Key.values()[eventCodes[index] & ~PRESSED];
+    }
+
+    public boolean isPress(int index) {
+        return (eventCodes[index] & PRESSED) != 0;
+    }
+
+    public int frameCount() {
+        return frameHashes.length;
+    }
+
+    public long frameHash(int frame) {
+        return frameHashes[frame];
+    }
+
+    /**
+     * Ecrit le film dans le flot donné, au format binaire.
+     *
+     * @param out
+     *            le flot, qui n'est pas fermé
+     * @throws IOException
+     *             en cas d'erreur d'écriture
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+
+        data.writeInt(eventCycles.length);
+        long previousCycle = 0;
+        for (int i = 0; i < eventCycles.length; ++i) {
+            writeVarLong(data, eventCycles[i] - previousCycle);
+            data.writeByte(eventCodes[i]);
+            previousCycle = eventCycles[i];
+        }
+
+        data.writeInt(frameHashes.length);
+        for (long hash : frameHashes) {
+            data.writeLong(hash);
+        }
+        data.flush();
+    }
+
+    /**
+     * Lit un film, au format binaire, dans le flot donné.
+     *
+     * @param in
+     *            le flot, qui n'est pas fermé
+     * @return le film lu
+     * @throws IOException
+     *             en cas d'erreur de lecture, ou si le flot ne contient pas un film
+     *             de la version actuelle du format
+     */
+    public static Movie readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC || data.readInt() != VERSION)
+            throw new IOException("Not a movie of version " + VERSION);
+
+        int eventCount = data.readInt();
+        long[] eventCycles = new long[eventCount];
+        byte[] eventCodes = new byte[eventCount];
+        long cycle = 0;
+        for (int i = 0; i < eventCount; ++i) {
+            cycle += readVarLong(data);
+            eventCycles[i] = cycle;
+            eventCodes[i] = data.readByte();
+            if ((eventCodes[i] & ~PRESSED) >= Key.values().length)
+                throw new IOException("Invalid key in event " + i);
+        }
+
+        long[] frameHashes = new long[data.readInt()];
+        for (int i = 0; i < frameHashes.length; ++i) {
+            frameHashes[i] = data.readLong();
+        }
+        return new Movie(eventCycles, eventCodes, frameHashes);
+    }
+
+    private static void writeVarLong(DataOutputStream data, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            data.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream data) throws IOException {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = data.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Movie && Arrays.equals(eventCycles, ((Movie) o).eventCycles)
+                && Arrays.equals(eventCodes, ((Movie) o).eventCodes)
+                && Arrays.equals(frameHashes, ((Movie) o).frameHashes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(frameHashes) * 31 + Arrays.hashCode(eventCycles);
+    }
+}
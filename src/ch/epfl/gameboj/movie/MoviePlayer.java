@@ -0,0 +1,113 @@
+package ch.epfl.gameboj.movie;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+/**
+ * Cette classe permet de rejouer un film d'entrées sans interface graphique, aussi
+ * vite que possible, en vérifiant l'empreinte de chaque image.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class MoviePlayer {
+
+    /**
+     * La valeur retournée par {@link #play(GameBoy, Movie)} lorsque toutes les
+     * images sont identiques à celles du film.
+     */
+    public static final int NO_MISMATCH = -1;
+
+    private MoviePlayer() {
+    }
+
+    /**
+     * Rejoue le film donné sur la Gameboy donnée, qui vient d'être allumée, en
+     * s'arrêtant à la première image dont l'empreinte diffère de celle du film.
+     *
+     * @param gameBoy
+     *            la Gameboy
+     * @param movie
+     *            le film
+     * @return l'index de la première image différente, ou NO_MISMATCH
+     * @throws IllegalArgumentException
+     *             si la Gameboy a déjà fonctionné
+     */
+    public static int play(GameBoy gameBoy, Movie movie) {
+        Preconditions.checkArgument(gameBoy.getCycles() == 0);
+
+        Joypad joypad = gameBoy.getJoypad();
+        byte[] frame = Movie.newFrame();
+        int event = 0;
+        for (int f = 0; f < movie.frameCount(); ++f) {
+            long frameEnd = Movie.frameEndCycle(f);
+
+            // Les événements datés de la fin de l'image ont été enregistrés après son
+            // empreinte
+            while (event < movie.eventCount() && movie.eventCycle(event) < frameEnd) {
+                gameBoy.runUntil(movie.eventCycle(event));
+                if (movie.isPress(event)) {
+                    joypad.keyPressed(movie.eventKey(event));
+                } else {
+                    joypad.keyReleased(movie.eventKey(event));
+                }
+                ++event;
+            }
+
+            gameBoy.runUntil(frameEnd);
+            if (Movie.frameHash(gameBoy, frame) != movie.frameHash(f)) {
+                return f;
+            }
+        }
+        return NO_MISMATCH;
+    }
+
+    /**
+     * Point d'entrée permettant de vérifier un film et de mesurer la vitesse de
+     * l'émulation: rejoue le film le nombre de fois donné (1 par défaut), chaque
+     * fois sur une nouvelle Gameboy.
+     *
+     * Arguments: fichier ROM, fichier du film, nombre de répétitions.
+     *
+     * @param args
+     *            les arguments de lancement
+     * @throws IOException
+     *             si la ROM ou le film ne peut être lu
+     */
+    public static void main(String[] args) throws IOException {
+        Preconditions.checkArgument(args.length == 2 || args.length == 3, () -> {
+            System.err.println("Usage: MoviePlayer <rom> <movie> [repetitions]");
+            System.exit(1);
+        });
+
+        File romFile = new File(args[0]);
+        Movie movie;
+        try (InputStream in = new FileInputStream(args[1])) {
+            movie = Movie.readFrom(in);
+        }
+        int repetitions = args.length == 3 ? Integer.parseInt(args[2]) : 1;
+
+        for (int i = 0; i < repetitions; ++i) {
+            GameBoy gameBoy = new GameBoy(Cartridge.ofFile(romFile));
+            long start = System.nanoTime();
+            int mismatch = play(gameBoy, movie);
+            long elapsed = System.nanoTime() - start;
+
+            if (mismatch != NO_MISMATCH) {
+                System.out.println("Mismatch at frame " + mismatch);
+                System.exit(1);
+            }
+            System.out.printf("%d frames, %d ms, %.0f fps (%.0fx real time)%n", movie.frameCount(),
+                    elapsed / 1_000_000, movie.frameCount() * 1e9 / elapsed,
+                    movie.frameCount() * 1e9 / elapsed / (GameBoy.CYCLES_PER_SECOND / (double) Movie.frameEndCycle(0)));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ch.epfl.gameboj.movie;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Joypad.Key;
+
+/**
+ * Cette classe modélise l'enregistreur d'un film d'entrées: les touches sont
+ * appuyées et relâchées, et la Gameboy avance, à travers lui.
+ *
+ * Ses méthodes ne sont pas synchronisées: elles doivent toutes être appelées
+ * par le fil de l'émulation, les entrées venant d'un autre fil lui étant
+ * transmises au préalable (par exemple par une file).
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+public final class MovieRecorder {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final GameBoy gameBoy;
+    private final byte[] frame = Movie.newFrame();
+
+    private long[] eventCycles = new long[INITIAL_CAPACITY];
+    private byte[] eventCodes = new byte[INITIAL_CAPACITY];
+    private int eventCount;
+    private long[] frameHashes = new long[INITIAL_CAPACITY];
+    private int frameCount;
+
+    /**
+     * Construit un enregistreur pour la Gameboy donnée, qui vient d'être allumée.
+     *
+     * @param gameBoy
+     *            la Gameboy
+     * @throws NullPointerException
+     *             si la Gameboy est nulle
+     * @throws IllegalArgumentException
+     *             si la Gameboy a déjà fonctionné
+     */
+    public MovieRecorder(GameBoy gameBoy) {
+        this.gameBoy = Objects.requireNonNull(gameBoy);
+        Preconditions.checkArgument(gameBoy.getCycles() == 0);
+    }
+
+    /**
+     * Appuie sur la touche donnée et enregistre l'appui au cycle actuel.
+     *
+     * @param key
+     *            la touche
+     */
+    public void keyPressed(Key key) {
+        record(key, true);
+        gameBoy.getJoypad().keyPressed(key);
+    }
+
+    /**
+     * Relâche la touche donnée et enregistre le relâchement au cycle actuel.
+     *
+     * @param key
+     *            la touche
+     */
+    public void keyReleased(Key key) {
+        record(key, false);
+        gameBoy.getJoypad().keyReleased(key);
+    }
+
+    /**
+     * Fait fonctionner la Gameboy jusqu'au cycle donné, en enregistrant
+     * l'empreinte de chaque image terminée en chemin.
+     *
+     * @param cycle
+     *            le cycle à atteindre
+     * @throws IllegalArgumentException
+     *             si le cycle est inférieur au cycle actuel
+     */
+    public void runUntil(long cycle) {
+        Preconditions.checkArgument(gameBoy.getCycles() <= cycle);
+        while (Movie.frameEndCycle(frameCount) <= cycle) {
+            gameBoy.runUntil(Movie.frameEndCycle(frameCount));
+            if (frameCount == frameHashes.length) {
+                frameHashes = Arrays.copyOf(frameHashes, 2 * frameCount);
+            }
+            frameHashes[frameCount++] = Movie.frameHash(gameBoy, frame);
+        }
+        gameBoy.runUntil(cycle);
+    }
+
+    /**
+     * Retourne le film enregistré jusque là.
+     *
+     * @return le film
+     */
+    public Movie toMovie() {
+        return new Movie(Arrays.copyOf(eventCycles, eventCount), Arrays.copyOf(eventCodes, eventCount),
+                Arrays.copyOf(frameHashes, frameCount));
+    }
+
+    private void record(Key key, boolean pressed) {
+        if (eventCount == eventCycles.length) {
+            eventCycles = Arrays.copyOf(eventCycles, 2 * eventCount);
+            eventCodes = Arrays.copyOf(eventCodes, 2 * eventCount);
+        }
+        eventCycles[eventCount] = gameBoy.getCycles();
+        eventCodes[eventCount] = Movie.eventCode(key, pressed);
+        ++eventCount;
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * This package contains the recording of input movies and their deterministic,
+ * headless replay.
+ *
+ * @author Christophe Saad (282557)
+ * @author David Cian (287967)
+ *
+ */
+package ch.epfl.gameboj.movie;